@@ -0,0 +1,47 @@
+package audio;
+/*
+    Created by nils on 19.02.2018 at 22:15.
+    
+    (c) nils 2018
+*/
+
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import net.dv8tion.jda.core.audio.AudioSendHandler;
+
+/**
+ * The send handler as it was before AudioPlayerSendHandler reused its frame: every pull asks the player for a new
+ * AudioFrame and hands its data array to JDA. Only kept to compare the two in SendHandlerBenchmark, it reads the
+ * active player from the scheduler like the current handler, so both follow a track change.
+ */
+class AllocatingSendHandler implements AudioSendHandler {
+    private final TrackScheduler scheduler;
+    private AudioFrame lastFrame;
+
+    AllocatingSendHandler(TrackScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public boolean canProvide() {
+        if (lastFrame == null)
+            lastFrame = scheduler.getPlayer().provide();
+
+        return lastFrame != null;
+    }
+
+    @Override
+    public byte[] provide20MsAudio() {
+        if (lastFrame == null)
+            lastFrame = scheduler.getPlayer().provide();
+
+        byte[] data = lastFrame != null ? lastFrame.getData() : null;
+        lastFrame = null;
+
+        return data;
+    }
+
+    @Override
+    public boolean isOpus() {
+        return true;
+    }
+}
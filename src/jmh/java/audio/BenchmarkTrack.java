@@ -0,0 +1,77 @@
+package audio;
+/*
+    Created by nils on 19.02.2018 at 22:05.
+    
+    (c) nils 2018
+*/
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.FunctionalResultHandler;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tracks for the audio benchmarks: a generated tone, so a benchmark needs neither a file nor the network, and the
+ * loading of any track the local source can read.
+ */
+class BenchmarkTrack {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int CHANNELS = 2;
+
+    /**
+     * @return a wav file (48 kHz, 16 bit, stereo) with a 440 Hz tone, deleted when the jvm exits
+     */
+    static File tone(int seconds) throws IOException {
+        File file = File.createTempFile("benchmark-tone", ".wav");
+        file.deleteOnExit();
+
+        int samples = SAMPLE_RATE * seconds;
+        int dataLength = samples * CHANNELS * 2;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeBytes("RIFF");
+            out.writeInt(Integer.reverseBytes(36 + dataLength));
+            out.writeBytes("WAVE");
+
+            out.writeBytes("fmt ");
+            out.writeInt(Integer.reverseBytes(16));
+            out.writeShort(Short.reverseBytes((short) 1)); // pcm
+            out.writeShort(Short.reverseBytes((short) CHANNELS));
+            out.writeInt(Integer.reverseBytes(SAMPLE_RATE));
+            out.writeInt(Integer.reverseBytes(SAMPLE_RATE * CHANNELS * 2));
+            out.writeShort(Short.reverseBytes((short) (CHANNELS * 2)));
+            out.writeShort(Short.reverseBytes((short) 16));
+
+            out.writeBytes("data");
+            out.writeInt(Integer.reverseBytes(dataLength));
+            for (int i = 0; i < samples; i++) {
+                short sample = (short) (Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE) * Short.MAX_VALUE / 4);
+                for (int channel = 0; channel < CHANNELS; channel++)
+                    out.writeShort(Short.reverseBytes(sample));
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @return the track, or the first track of the playlist the identifier points to
+     */
+    static AudioTrack load(AudioPlayerManager manager, String identifier) throws Exception {
+        CompletableFuture<AudioTrack> result = new CompletableFuture<>();
+        manager.loadItem(identifier, new FunctionalResultHandler(
+                result::complete,
+                playlist -> result.complete(playlist.getTracks().isEmpty() ? null : playlist.getTracks().get(0)),
+                () -> result.complete(null),
+                result::completeExceptionally)).get();
+        AudioTrack track = result.get();
+        if (track == null)
+            throw new IllegalArgumentException("No track found in " + identifier);
+        return track;
+    }
+}
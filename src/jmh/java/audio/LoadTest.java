@@ -0,0 +1,199 @@
+package audio;
+/*
+    Created by nils on 17.02.2018 at 15:08.
+    
+    (c) nils 2018
+*/
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import core.tools.LatencyHistogram;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline benchmark of the audio pipeline: N simulated guilds play a local file through their own GuildMusicManager
+ * and AudioPlayerSendHandler, without Discord. Every send handler is pulled every 20ms like JDA's send thread does,
+ * the file is looped with the track loop mode, so the gapless track change is measured as well.
+ *
+ * Reported per run: cpu time per stream, frame-miss rate, p99 latency of canProvide() + provide20MsAudio(), allocation
+ * rate and the longest silence of a guild after playback started (which includes the track changes).
+ *
+ * Without a file a generated 30 second tone is played, so there is a track change every 30 seconds. Started with:
+ *  mvn -P jmh test-compile exec:exec -Dbenchmark.main=audio.LoadTest -Dbenchmark.args="loadtest <guilds> <seconds> [file]"
+ *  mvn -P jmh test-compile exec:exec -Dbenchmark.main=audio.LoadTest -Dbenchmark.args="benchmark <max guilds> <seconds> [file]"
+ *
+ * The benchmark mode runs with 1, 2, 4, ... max guilds.
+ */
+public class LoadTest {
+
+    private static final long FRAME_INTERVAL = 20;
+    private static final long WARMUP = 5 * 1000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3 || !(args[0].equals("loadtest") || args[0].equals("benchmark"))) {
+            System.out.println("Usage: loadtest <guilds> <seconds> [file] | benchmark <max guilds> <seconds> [file]");
+            return;
+        }
+        boolean sweep = args[0].equals("benchmark");
+        int guilds = Integer.parseInt(args[1]);
+        long duration = Long.parseLong(args[2]) * 1000;
+
+        AudioConfig config = new AudioConfig();
+        System.out.println("Settings: " + config);
+        System.out.println("Cores: " + Runtime.getRuntime().availableProcessors());
+
+        AudioPlayerManager manager = AudioCore.createPlayerManager(config);
+        try {
+            AudioTrack track = BenchmarkTrack.load(manager, args.length > 3 ? args[3] : BenchmarkTrack.tone(30).getPath());
+            for (int count = sweep ? 1 : guilds; count <= guilds; count = count < guilds && count * 2 > guilds ? guilds : count * 2)
+                System.out.println(new LoadTest(manager, count, track).run(duration));
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    private final AudioPlayerManager manager;
+    private final int guildCount;
+    private final AudioTrack track;
+
+    private final AtomicLong provided = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final List<Guild> guilds;
+
+    public LoadTest(AudioPlayerManager manager, int guildCount, AudioTrack track) {
+        this.manager = manager;
+        this.guildCount = guildCount;
+        this.track = track;
+        this.guilds = new ArrayList<>(guildCount);
+    }
+
+    /**
+     * Runs the test for the given time (plus a warmup that is not measured) and returns the report.
+     */
+    public String run(long duration) throws Exception {
+        for (int i = 0; i < guildCount; i++) {
+            GuildMusicManager musicManager = new GuildMusicManager(manager);
+            musicManager.scheduler.setLoopMode(TrackScheduler.LoopMode.TRACK);
+            musicManager.scheduler.queue(new AudioInfo(track.makeClone(), i, 0, 0));
+            guilds.add(new Guild(musicManager));
+        }
+
+        // one sender per core, every guild is pulled from a single thread as by its JDA send thread
+        int senders = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), guildCount));
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(senders);
+        for (int i = 0; i < senders; i++) {
+            List<Guild> pulled = guilds.subList(i * guildCount / senders, (i + 1) * guildCount / senders);
+            executor.scheduleAtFixedRate(() -> pulled.forEach(this::pull), 0, FRAME_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            Thread.sleep(WARMUP);
+            provided.set(0);
+            missed.set(0);
+            latency.reset();
+            guilds.forEach(Guild::reset);
+
+            long allocatedStart = allocatedBytes();
+            long cpuStart = processCpuTime();
+            long start = System.nanoTime();
+            Thread.sleep(duration);
+            long cpu = processCpuTime() - cpuStart;
+            long wall = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedStart;
+
+            return report(cpu, wall, allocated);
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+            for (Guild guild : guilds)
+                guild.musicManager.destroy();
+        }
+    }
+
+    private void pull(Guild guild) {
+        long start = System.nanoTime();
+        boolean frame = guild.sendHandler.canProvide();
+        if (frame)
+            guild.sendHandler.provide20MsAudio();
+        latency.record(System.nanoTime() - start);
+
+        (frame ? provided : missed).incrementAndGet();
+        guild.frame(frame);
+    }
+
+    private String report(long cpu, long wall, long allocated) {
+        double load = (double) cpu / wall;
+        double seconds = wall / 1e9;
+        long total = provided.get() + missed.get();
+        long silence = 0;
+        for (Guild guild : guilds)
+            silence = Math.max(silence, guild.longestGap);
+
+        return "Guilds: " + guildCount
+                + " | cpu/stream: " + percent(load / guildCount) + " of a core"
+                + " | cpu: " + percent(load)
+                + " | frame misses: " + percent(total == 0 ? 0 : (double) missed.get() / total)
+                + " | provide p99: " + micros(latency.getPercentile(99)) + "us, max: " + micros(latency.getMax()) + "us"
+                + " | allocation: " + Math.round(allocated / seconds / 1024) + " KB/s"
+                + " | longest silence: " + silence * FRAME_INTERVAL + "ms";
+    }
+
+    private static String percent(double value) {
+        return Math.round(value * 10000) / 100.0 + "%";
+    }
+
+    private static String micros(long nanos) {
+        return String.valueOf(Math.round(nanos / 100.0) / 10.0);
+    }
+
+    private static long processCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+
+    // bytes allocated by all live threads, playback and sender threads live through the whole measurement
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sum = 0;
+        for (long allocated : bean.getThreadAllocatedBytes(bean.getAllThreadIds()))
+            if (allocated > 0)
+                sum += allocated;
+        return sum;
+    }
+
+    // a simulated guild, only touched by its sender thread (and reset while the senders sleep between pulls)
+    private static class Guild {
+        private final GuildMusicManager musicManager;
+        private final AudioPlayerSendHandler sendHandler;
+        private boolean started = false;
+        private long gap = 0;
+        private long longestGap = 0;
+
+        private Guild(GuildMusicManager musicManager) {
+            this.musicManager = musicManager;
+            this.sendHandler = musicManager.getSendHandler();
+        }
+
+        private void frame(boolean provided) {
+            if (provided) {
+                started = true;
+                gap = 0;
+            } else if (started) {
+                longestGap = Math.max(longestGap, ++gap);
+            }
+        }
+
+        private void reset() {
+            gap = 0;
+            longestGap = 0;
+        }
+    }
+
+}
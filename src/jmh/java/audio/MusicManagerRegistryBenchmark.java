@@ -0,0 +1,121 @@
+package audio;
+/*
+    Created by nils on 19.02.2018 at 22:50.
+    
+    (c) nils 2018
+*/
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Music manager lookups of many threads at once: the ConcurrentHashMap registry of AudioCore compared to the old one,
+ * a HashMap behind a lock on the whole AudioCore that parsed the guild id from its string on every call. Every lookup
+ * goes to a random one of the registered guilds, the managers exist already like for any guild that plays music.
+ *
+ * The old lookup also installed the send handler on every call, which needs a connected guild and is left out of both.
+ *
+ * main() runs the benchmark with 1, 2, 4 ... 64 threads and prints the throughput of both per thread count:
+ *
+ *  mvn -P jmh test-compile exec:exec -Dbenchmark.main=audio.MusicManagerRegistryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MusicManagerRegistryBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    @Param({"1000"})
+    public int guilds;
+
+    private AudioCore audioCore;
+    private long[] ids;
+    private String[] idStrings;
+
+    // the old registry
+    private final Object lock = new Object();
+    private final Map<Long, GuildMusicManager> synchronizedManagers = new HashMap<>();
+
+    @Setup
+    public void register() {
+        audioCore = new AudioCore();
+        ids = new long[guilds];
+        idStrings = new String[guilds];
+        for (int i = 0; i < guilds; i++) {
+            // snowflake sized ids
+            ids[i] = 300000000000000000L + i * 7919L;
+            idStrings[i] = String.valueOf(ids[i]);
+            synchronizedManagers.put(ids[i], audioCore.getMusicManager(ids[i]));
+        }
+    }
+
+    @TearDown
+    public void shutdown() {
+        audioCore.shutdown();
+    }
+
+    @Benchmark
+    public GuildMusicManager concurrentRegistry() {
+        return audioCore.getMusicManager(ids[ThreadLocalRandom.current().nextInt(guilds)]);
+    }
+
+    // AudioCore.getGuildAudioPlayer before the registry, the id string is what guild.getId() returned
+    @Benchmark
+    public GuildMusicManager synchronizedRegistry() {
+        String id = idStrings[ThreadLocalRandom.current().nextInt(guilds)];
+        synchronized (lock) {
+            long guildId = Long.parseLong(id);
+            GuildMusicManager musicManager = synchronizedManagers.get(guildId);
+
+            if (musicManager == null) {
+                musicManager = audioCore.getMusicManager(guildId);
+                synchronizedManagers.put(guildId, musicManager);
+            }
+
+            return musicManager;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        List<String> lines = new ArrayList<>();
+        for (int threads : THREADS) {
+            for (RunResult result : new Runner(new OptionsBuilder()
+                    .include(MusicManagerRegistryBenchmark.class.getName())
+                    .threads(threads)
+                    .build()).run()) {
+                lines.add(String.format("%3d threads  %-22s %12.3f +- %.3f %s", threads,
+                        result.getParams().getBenchmark().substring(result.getParams().getBenchmark().lastIndexOf('.') + 1),
+                        result.getPrimaryResult().getScore(), result.getPrimaryResult().getScoreError(),
+                        result.getPrimaryResult().getScoreUnit()));
+            }
+        }
+
+        System.out.println();
+        lines.forEach(System.out::println);
+    }
+}
@@ -0,0 +1,81 @@
+package audio;
+/*
+    Created by nils on 19.02.2018 at 22:20.
+    
+    (c) nils 2018
+*/
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import net.dv8tion.jda.core.audio.AudioSendHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation of the frame hand-off to JDA: the reused AudioPlayerSendHandler compared to the old handler that got a
+ * new AudioFrame from the player for every packet. One guild plays a generated tone in track loop mode, and every
+ * operation is one 20ms packet pulled like JDA's send thread does.
+ *
+ * The player encodes faster than real time but slower than the benchmark pulls, so an operation waits for the next
+ * frame and its time is the encoding, not the hand-off. The gc profiler counts the allocations of all threads, the
+ * playback thread allocates the same for both handlers - the difference of gc.alloc.rate.norm is the hand-off.
+ * Times 50 it is the allocation per guild and second.
+ *
+ *  mvn -P jmh test-compile exec:exec -Dbenchmark.args="SendHandler -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendHandlerBenchmark {
+
+    // a frame has to arrive within this time, otherwise the track does not play at all
+    private static final long FRAME_TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+    @Param({"reused", "allocating"})
+    public String handler;
+
+    private AudioPlayerManager manager;
+    private GuildMusicManager musicManager;
+    private AudioSendHandler sendHandler;
+
+    @Setup
+    public void play() throws Exception {
+        manager = AudioCore.createPlayerManager(new AudioConfig());
+        musicManager = new GuildMusicManager(manager);
+        musicManager.scheduler.setLoopMode(TrackScheduler.LoopMode.TRACK);
+        musicManager.scheduler.queue(new AudioInfo(BenchmarkTrack.load(manager, BenchmarkTrack.tone(30).getPath()), 0, 0, 0));
+
+        sendHandler = handler.equals("reused") ? musicManager.getSendHandler() : new AllocatingSendHandler(musicManager.scheduler);
+    }
+
+    @TearDown
+    public void stop() {
+        musicManager.destroy();
+        manager.shutdown();
+    }
+
+    @Benchmark
+    public byte[] provideFrame() {
+        long start = System.nanoTime();
+        while (!sendHandler.canProvide()) {
+            if (System.nanoTime() - start > FRAME_TIMEOUT)
+                throw new IllegalStateException("The player did not provide a frame");
+            Thread.yield();
+        }
+        return sendHandler.provide20MsAudio();
+    }
+}
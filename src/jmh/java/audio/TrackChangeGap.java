@@ -0,0 +1,155 @@
+package audio;
+/*
+    Created by nils on 20.02.2018 at 10:40.
+    
+    (c) nils 2018
+*/
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
+import utils.Static;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the gap at every track change of one guild playing a local file: the frames the send handler could not
+ * provide between the end of a track (onTrackEnd) and the first frame of the next one. The queue holds the file
+ * changes + 1 times and is played once with the preload on the standby player and once without it, where the next
+ * track is only loaded when the current one ended.
+ *
+ * Without a file a generated 8 second tone is played, long enough for the preload to start. Started with:
+ *  mvn -P jmh test-compile exec:exec -Dbenchmark.main=audio.TrackChangeGap -Dbenchmark.args="<changes> [file]"
+ */
+public class TrackChangeGap extends AudioEventAdapter {
+
+    private static final long FRAME_INTERVAL = 20;
+    private static final int TONE = 8;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: <changes> [file]");
+            return;
+        }
+        int changes = Integer.parseInt(args[0]);
+
+        AudioPlayerManager manager = AudioCore.createPlayerManager(new AudioConfig());
+        try {
+            AudioTrack track = BenchmarkTrack.load(manager, args.length > 1 ? args[1] : BenchmarkTrack.tone(TONE).getPath());
+            System.out.println(new TrackChangeGap(manager, track, changes).run(true));
+            System.out.println(new TrackChangeGap(manager, track, changes).run(false));
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    private final AudioPlayerManager manager;
+    private final AudioTrack track;
+    private final int changes;
+
+    private final CountDownLatch measured;
+    private final List<Integer> gaps = Collections.synchronizedList(new ArrayList<>());
+    // players this harness listens to, the scheduler swaps the active one with the standby player
+    private final Set<AudioPlayer> players = new HashSet<>();
+
+    // only used by the sender thread, which also runs onTrackEnd: lavaplayer ends a track within provide()
+    private boolean ended = false;
+    private int missed = 0;
+
+    public TrackChangeGap(AudioPlayerManager manager, AudioTrack track, int changes) {
+        this.manager = manager;
+        this.track = track;
+        this.changes = changes;
+        this.measured = new CountDownLatch(changes);
+    }
+
+    /**
+     * Plays the queue until every track change was measured and returns the report.
+     */
+    public String run(boolean preload) throws Exception {
+        long preloadTime = Static.Audio.PRELOAD_TIME;
+        // scheduled an hour after the end of the track, so the track has ended and nothing is preloaded
+        if (!preload)
+            Static.Audio.PRELOAD_TIME = -TimeUnit.HOURS.toMillis(1);
+
+        GuildMusicManager musicManager = new GuildMusicManager(manager);
+        ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (int i = 0; i <= changes; i++)
+                musicManager.scheduler.queue(new AudioInfo(track.makeClone(), 0, 0, 0));
+            sender.scheduleAtFixedRate(() -> pull(musicManager), 0, FRAME_INTERVAL, TimeUnit.MILLISECONDS);
+
+            long timeout = (changes + 1) * (track.getDuration() + 10 * 1000);
+            if (!measured.await(timeout, TimeUnit.MILLISECONDS))
+                return "Preload: " + preload + " | timed out after " + gaps.size() + " of " + changes + " track changes";
+            return report(preload);
+        } finally {
+            sender.shutdownNow();
+            sender.awaitTermination(1, TimeUnit.SECONDS);
+            musicManager.destroy();
+            Static.Audio.PRELOAD_TIME = preloadTime;
+        }
+    }
+
+    private void pull(GuildMusicManager musicManager) {
+        AudioPlayer player = musicManager.scheduler.getPlayer();
+        if (players.add(player))
+            player.addListener(this);
+
+        AudioPlayerSendHandler sendHandler = musicManager.getSendHandler();
+        boolean frame = sendHandler.canProvide();
+        if (frame)
+            sendHandler.provide20MsAudio();
+
+        if (!ended)
+            return;
+        if (frame) {
+            ended = false;
+            gaps.add(missed);
+            measured.countDown();
+        } else {
+            missed++;
+        }
+    }
+
+    @Override
+    public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
+        // stopped preloads and the end of the last track do not count
+        if (endReason != AudioTrackEndReason.FINISHED || measured.getCount() == 0)
+            return;
+        ended = true;
+        missed = 0;
+    }
+
+    private String report(boolean preload) {
+        int gapless = 0;
+        long sum = 0;
+        int max = 0;
+        synchronized (gaps) {
+            for (int gap : gaps) {
+                if (gap == 0)
+                    gapless++;
+                sum += gap;
+                max = Math.max(max, gap);
+            }
+        }
+
+        return "Preload: " + preload
+                + " | track changes: " + gaps.size()
+                + " | without a missed frame: " + gapless
+                + " | missed frames per change: " + Math.round(sum * 10.0 / gaps.size()) / 10.0 + " avg, " + max + " max"
+                + " | longest gap: " + max * FRAME_INTERVAL + "ms"
+                + " | gaps: " + gaps;
+    }
+
+}
@@ -0,0 +1,87 @@
+package commands.chat.core;
+/*
+    Created by nils on 19.02.2018 at 21:40.
+    
+    (c) nils 2018
+*/
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import utils.Static;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting a message into command name and arguments with ChatInput compared to the old way of the listener and
+ * ChatHandler.handleInput (lower case twice, replaceFirst and split). Run it with the gc profiler, the bytes per
+ * message are the interesting part:
+ *
+ *  mvn -P jmh test-compile exec:exec -Dbenchmark.args="ChatInput -prof gc"
+ *
+ * "chat" is a message without the prefix, most messages the bot sees are of that kind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatInputBenchmark {
+
+    @Param({"help", "play", "bio", "chat"})
+    public String message;
+
+    private String raw;
+
+    @Setup
+    public void message(){
+        switch (message) {
+            case "help":
+                raw = Static.PREFIX + "help";
+                break;
+            case "play":
+                raw = Static.PREFIX + "play https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+                break;
+            case "bio":
+                raw = Static.PREFIX + "bio Hi, I am Nils and I like Java, Music and long Bios with Upper Case letters";
+                break;
+            default:
+                raw = "Did anyone see the match yesterday? It was crazy";
+        }
+    }
+
+    @Benchmark
+    public void chatInput(Blackhole blackhole){
+        ChatInput input = ChatInput.parse(raw, Static.PREFIX);
+        if (input != null) {
+            blackhole.consume(input.cmd);
+            blackhole.consume(input.args);
+        }
+    }
+
+    // ChatCommandListener.onMessageReceived and ChatHandler.handleInput before ChatInput
+    @Benchmark
+    public void lowerCaseAndSplit(Blackhole blackhole){
+        String msg = raw.trim();
+
+        if (msg.toLowerCase().startsWith(Static.PREFIX)) {
+            String full = msg.toLowerCase().replaceFirst(Static.PREFIX, "").trim();
+
+            String cmd = full.split(" ")[0];
+            String[] args = full.replaceFirst(cmd + (full.split(" ").length > 1 ? " " : ""), "").split(" ");
+
+            blackhole.consume(cmd);
+            blackhole.consume(args);
+        }
+    }
+}
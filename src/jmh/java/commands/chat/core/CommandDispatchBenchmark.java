@@ -0,0 +1,128 @@
+package commands.chat.core;
+/*
+    Created by nils on 19.02.2018 at 21:10.
+    
+    (c) nils 2018
+*/
+
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command lookup through the alias map of ChatHandler compared to the scan over all commands it replaced, where every
+ * command was asked in turn if it answers to the name. The looked up command is registered last, the worst case of
+ * the scan. Unknown names (e.g. commands of another bot with the same prefix) always scan the whole list.
+ *
+ * All commands share one class here, so the scan's alias check is monomorphic - with the real commands every check
+ * was a call to another class, the numbers of the scan are on the optimistic side.
+ *
+ *  mvn -P jmh test-compile exec:exec -Dbenchmark.args="CommandDispatch"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandDispatchBenchmark {
+
+    @Param({"20", "200", "2000"})
+    public int commands;
+
+    private final List<ChatCommand> registered = new ArrayList<>();
+    private String last;
+    private String unknown;
+
+    @Setup
+    public void register(){
+        // the registry of ChatHandler is static, the prefix keeps the aliases apart if several setups share a jvm
+        String prefix = "b" + ChatHandler.chatCommands.size() + "-";
+
+        ChatHandler handler = new ChatHandler();
+        for (int i = 0; i < commands; i++){
+            ChatCommand command = new Named(prefix + "command" + i, prefix + "c" + i);
+            handler.addCommand(command);
+            registered.add(command);
+        }
+
+        // copies, so the names are compared char by char like the ones parsed from a message
+        last = new String(prefix + "c" + (commands - 1));
+        unknown = new String(prefix + "unknown");
+    }
+
+    @Benchmark
+    public ChatCommand mapHit(){
+        return ChatHandler.getCommand(last);
+    }
+
+    @Benchmark
+    public ChatCommand mapMiss(){
+        return ChatHandler.getCommand(unknown);
+    }
+
+    @Benchmark
+    public ChatCommand scanHit(){
+        return scan(last);
+    }
+
+    @Benchmark
+    public ChatCommand scanMiss(){
+        return scan(unknown);
+    }
+
+    // the loop of the old testCommands()
+    private ChatCommand scan(String cmd){
+        for (ChatCommand command : registered)
+            if (answersTo(command, cmd))
+                return command;
+        return null;
+    }
+
+    // what the old execute() of a command did: cmd.equals("help") || cmd.equals("?")
+    private static boolean answersTo(ChatCommand command, String cmd){
+        for (String alias : command.aliases())
+            if (cmd.equals(alias))
+                return true;
+        return false;
+    }
+
+    private static class Named implements ChatCommand {
+        private final String[] aliases;
+
+        private Named(String... aliases){
+            this.aliases = aliases;
+        }
+
+        @Override
+        public String[] aliases() {
+            return aliases;
+        }
+
+        @Override
+        public void action(MessageReceivedEvent event, String full, String cmd, String[] args) { }
+
+        @Override
+        public String premiumPermission() {
+            return null;
+        }
+
+        @Override
+        public int permissionLevel() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package core.tools;
+/*
+    Created by nils on 19.02.2018 at 23:25.
+    
+    (c) nils 2018
+*/
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates of many small json files, like the per-user files before the user store: the journal of JsonFile compared
+ * to the old JsonFile that rewrote the whole file on every set. Every user file gets the fields of the old user
+ * files, then each operation sets the message counter of every user once per update round, the users take turns
+ * like they do in the chat. The files are created again for every iteration.
+ *
+ *  mvn -P jmh test-compile exec:exec -Dbenchmark.args="JsonFile"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class JsonFileBenchmark {
+
+    @Param({"journal", "rewrite"})
+    public String file;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"100"})
+    public int updates;
+
+    private File dir;
+    private JsonFile[] journaled;
+    private RewritingJsonFile[] rewriting;
+
+    @Setup(Level.Iteration)
+    public void createFiles() throws IOException {
+        dir = Files.createTempDirectory("jsonfile").toFile();
+        journaled = new JsonFile[users];
+        rewriting = new RewritingJsonFile[users];
+
+        for (int i = 0; i < users; i++) {
+            String path = new File(dir, i + ".json").getPath();
+            if (file.equals("journal")) {
+                journaled[i] = new JsonFile(path);
+                journaled[i].set("registered", true);
+                journaled[i].set("msgs", 0L);
+                journaled[i].set("xp", 0L);
+                journaled[i].set("reputation", 100L);
+            } else {
+                rewriting[i] = new RewritingJsonFile(path);
+                rewriting[i].set("registered", true);
+                rewriting[i].set("msgs", 0L);
+                rewriting[i].set("xp", 0L);
+                rewriting[i].set("reputation", 100L);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteFiles() {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File json : files)
+                json.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public Object update() {
+        if (file.equals("journal")) {
+            for (long round = 1; round <= updates; round++)
+                for (JsonFile user : journaled)
+                    user.set("msgs", round);
+            return journaled[users - 1].get("msgs");
+        }
+
+        for (long round = 1; round <= updates; round++)
+            for (RewritingJsonFile user : rewriting)
+                user.set("msgs", round);
+        return rewriting[users - 1].get("msgs");
+    }
+
+}
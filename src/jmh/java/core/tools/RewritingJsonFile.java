@@ -0,0 +1,67 @@
+package core.tools;
+/*
+    Created by nils on 19.02.2018 at 23:10.
+    
+    (c) nils 2018
+*/
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Reader;
+
+/**
+ * JsonFile as it was before it kept a journal: every set rewrites the whole file. Only kept to compare the two in
+ * JsonFileBenchmark, the reader of the constructor is closed so thousands of files can be open at once.
+ */
+class RewritingJsonFile {
+    private final String path;
+    private JSONObject main;
+
+    RewritingJsonFile(String path) {
+        this.path = path;
+        try {
+            File file = new File(path);
+
+            if (!file.exists()) {
+                file.getParentFile().mkdirs();
+                file.createNewFile();
+                save(new JSONObject());
+            }
+            try (Reader reader = new FileReader(path)) {
+                main = (JSONObject) new JSONParser().parse(reader);
+            }
+
+        } catch (Exception e){
+            e.printStackTrace();
+        }
+    }
+
+    void set(String key, Object value){
+        try {
+            main.put(key, value);
+            save(main);
+        } catch (Exception e){
+            e.printStackTrace();
+        }
+    }
+
+    Object get(String key){
+        return main.get(key);
+    }
+
+    private void save(JSONObject object){
+        try {
+            FileWriter writer = new FileWriter(path);
+            writer.write(object.toJSONString());
+            writer.flush();
+            writer.close();
+        } catch (Exception e){
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package audio;
+/*
+    Created by nils on 17.02.2018 at 14:22.
+    
+    (c) nils 2018
+*/
+
+import com.sedmelluq.discord.lavaplayer.player.AudioConfiguration;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import core.tools.JsonFile;
+import utils.Static;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tuning of the audio player manager, read from config/audio.json. Missing keys are written with their defaults
+ * (see {@link Static.Audio}), so the file always lists every setting:
+ *
+ *  frameBufferDuration   ms of audio buffered per playing track, more survives longer hiccups but costs memory
+ *  itemLoaderPoolSize    threads resolving tracks and playlists
+ *  opusQuality           0 - 10, lower costs less cpu when a track has to be re-encoded
+ *  resamplingQuality     LOW, MEDIUM or HIGH
+ *  trackStuckThreshold   ms without a frame after which a track counts as stuck
+ */
+public class AudioConfig {
+
+    private static final String PATH = "config/audio.json";
+
+    public final int frameBufferDuration;
+    public final int itemLoaderPoolSize;
+    public final int opusQuality;
+    public final AudioConfiguration.ResamplingQuality resamplingQuality;
+    public final long trackStuckThreshold;
+
+    public AudioConfig() {
+        this(new JsonFile(PATH));
+    }
+
+    public AudioConfig(JsonFile file) {
+        Map<String, Object> missing = new HashMap<>();
+        frameBufferDuration = (int) number(file, missing, "frameBufferDuration", Static.Audio.FRAME_BUFFER_DURATION);
+        itemLoaderPoolSize = (int) number(file, missing, "itemLoaderPoolSize", Static.Audio.ITEM_LOADER_POOL_SIZE);
+        opusQuality = (int) Math.max(0, Math.min(10, number(file, missing, "opusQuality", Static.Audio.OPUS_QUALITY)));
+        trackStuckThreshold = number(file, missing, "trackStuckThreshold", Static.Audio.TRACK_STUCK_THRESHOLD);
+
+        Object resampling = file.get("resamplingQuality");
+        if (resampling == null)
+            missing.put("resamplingQuality", resampling = Static.Audio.RESAMPLING_QUALITY);
+        resamplingQuality = AudioConfiguration.ResamplingQuality.valueOf(resampling.toString().toUpperCase());
+
+        file.set(missing);
+    }
+
+    private static long number(JsonFile file, Map<String, Object> missing, String key, long filler) {
+        Object value = file.get(key);
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        missing.put(key, filler);
+        return filler;
+    }
+
+    public void apply(AudioPlayerManager manager) {
+        manager.setFrameBufferDuration(frameBufferDuration);
+        manager.setItemLoaderThreadPoolSize(itemLoaderPoolSize);
+        manager.setTrackStuckThreshold(trackStuckThreshold);
+        manager.getConfiguration().setOpusEncodingQuality(opusQuality);
+        manager.getConfiguration().setResamplingQuality(resamplingQuality);
+    }
+
+    @Override
+    public String toString() {
+        return "frame buffer: " + frameBufferDuration + "ms, loader threads: " + itemLoaderPoolSize + ", opus quality: "
+                + opusQuality + ", resampling: " + resamplingQuality + ", stuck threshold: " + trackStuckThreshold + "ms";
+    }
+
+}
@@ -9,10 +9,15 @@ import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.source.AudioSourceManagers;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
 import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import commands.chat.tools.ChannelNotifier;
 import commands.chat.tools.Message;
+import core.Main;
+import core.tools.Futures;
+import core.tools.TimedCache;
 import net.dv8tion.jda.core.AccountType;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.JDABuilder;
@@ -25,36 +30,240 @@ import net.dv8tion.jda.core.hooks.ListenerAdapter;
 import net.dv8tion.jda.core.managers.AudioManager;
 import utils.Static;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.sql.Statement;
 import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 public class AudioCore extends ListenerAdapter {
 
     private final AudioPlayerManager playerManager;
-    private final Map<Long, GuildMusicManager> musicManagers;
+    // boxed keys: the JDK has no concurrent map of primitive longs, and one Long per lookup costs little next to the
+    // lock-free get, a primitive map would need a new dependency or a hand-written concurrent table
+    private final ConcurrentMap<Long, GuildMusicManager> musicManagers;
+
+    // loaded tracks in lavaplayer's encoded form, a few hundred bytes instead of a track object with its info and
+    // source state, every hit decodes a new track instance
+    private final TimedCache<String, byte[]> trackCache = new TimedCache<>(Static.Audio.TRACK_CACHE_SIZE, Static.Audio.TRACK_CACHE_TTL);
+
+    private final ScheduledExecutorService reaper;
+
+    private static final File QUEUE_DIR = new File("queues");
+    private final ScheduledExecutorService snapshots;
+    // change count of the last written snapshot per guild, only used while holding the lock of saveQueues
+    private final Map<Long, Long> savedChanges = new HashMap<>();
 
     public AudioCore() {
-        this.musicManagers = new HashMap<>();
+        this.musicManagers = new ConcurrentHashMap<>();
+
+        // config/audio.json is read once here, the benchmarks and the load test pass the settings they read themselves
+        this.playerManager = createPlayerManager(new AudioConfig());
 
-        this.playerManager = new DefaultAudioPlayerManager();
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Audio-Idle-Reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::removeIdlePlayers, Static.Audio.IDLE_CHECK_INTERVAL, Static.Audio.IDLE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+
+        this.snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Queue-Snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshots.scheduleWithFixedDelay(this::saveQueues, Static.Audio.SNAPSHOT_INTERVAL, Static.Audio.SNAPSHOT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param config the settings of config/audio.json
+     * @return a player manager with all sources, tuned with the given settings
+     */
+    public static AudioPlayerManager createPlayerManager(AudioConfig config) {
+        AudioPlayerManager playerManager = new DefaultAudioPlayerManager();
+        config.apply(playerManager);
         AudioSourceManagers.registerRemoteSources(playerManager);
         AudioSourceManagers.registerLocalSource(playerManager);
+        return playerManager;
     }
 
-    public synchronized GuildMusicManager getGuildAudioPlayer(Guild guild) {
-        long guildId = Long.parseLong(guild.getId());
+    public GuildMusicManager getGuildAudioPlayer(Guild guild) {
+        GuildMusicManager musicManager = getMusicManager(guild.getIdLong());
+
+        AudioManager audioManager = guild.getAudioManager();
+        if (audioManager.getSendingHandler() != musicManager.getSendHandler())
+            audioManager.setSendingHandler(musicManager.getSendHandler());
+
+        return musicManager;
+    }
+
+    // the touched manager of the guild, a new one if there is none or the reaper just evicted it
+    GuildMusicManager getMusicManager(long guildId) {
+        // plain get first: it never locks, while computeIfAbsent locks the bin even if the key exists (Java 8)
         GuildMusicManager musicManager = musicManagers.get(guildId);
+        while (true) {
+            if (musicManager == null)
+                musicManager = musicManagers.computeIfAbsent(guildId, id -> new GuildMusicManager(playerManager));
+            if (musicManager.touch())
+                return musicManager;
+            // evicted by the reaper in the meantime
+            musicManagers.remove(guildId, musicManager);
+            musicManager = null;
+        }
+    }
+
+    public TimedCache<String, byte[]> getTrackCache() {
+        return trackCache;
+    }
 
-        if (musicManager == null) {
-            musicManager = new GuildMusicManager(playerManager);
-            musicManagers.put(guildId, musicManager);
+    /**
+     * Destroys the players of guilds that are disconnected, paused or not playing for longer than
+     * {@link Static.Audio#IDLE_TIMEOUT}, they are created again with the next music command.
+     */
+    private void removeIdlePlayers() {
+        trackCache.removeExpired();
+        if (Main.jda == null)
+            return;
+
+        for (Map.Entry<Long, GuildMusicManager> entry : musicManagers.entrySet()) {
+            GuildMusicManager musicManager = entry.getValue();
+            if (System.currentTimeMillis() - musicManager.getLastUsed() < Static.Audio.IDLE_TIMEOUT)
+                continue;
+
+            Guild guild = Main.jda.getGuildById(entry.getKey());
+            boolean connected = guild != null && guild.getAudioManager().isConnected();
+            if (connected && musicManager.scheduler.isPlaying(false))
+                continue;
+
+            // a command that touches the manager after this check gets a new one, never this destroyed one
+            boolean evicted = musicManager.retireIfIdle(Static.Audio.IDLE_TIMEOUT, () -> {
+                if (guild != null) {
+                    if (connected)
+                        guild.getAudioManager().closeAudioConnection();
+                    guild.getAudioManager().setSendingHandler(null);
+                }
+            });
+            if (!evicted)
+                continue;
+
+            musicManagers.remove(entry.getKey(), musicManager);
+            musicManager.destroy();
         }
+    }
 
-        guild.getAudioManager().setSendingHandler(musicManager.getSendHandler());
+    /**
+     * Stops the reaper and the snapshot thread and writes the last snapshots. Must be called before JDA shuts down,
+     * while guilds and voice channels can still be looked up.
+     */
+    public void shutdown() {
+        reaper.shutdownNow();
+        snapshots.shutdownNow();
+        saveQueues(true);
+    }
 
-        return musicManager;
+    private void saveQueues() {
+        saveQueues(false);
+    }
+
+    /**
+     * Writes the queue snapshots of all guilds whose queue changed since the last run. If only the position of the
+     * current track changed, just that field is updated. Snapshots of empty queues and evicted players are deleted,
+     * except on shutdown: a guild that can not be looked up anymore keeps its last snapshot.
+     */
+    private synchronized void saveQueues(boolean shutdown) {
+        if (Main.jda == null)
+            return;
+
+        for (Map.Entry<Long, GuildMusicManager> entry : musicManagers.entrySet()) {
+            long guildId = entry.getKey();
+            TrackScheduler scheduler = entry.getValue().scheduler;
+            File file = new File(QUEUE_DIR, guildId + ".bin");
+
+            try {
+                long position = scheduler.getPosition();
+                int volume = scheduler.getVolume();
+
+                Long saved = savedChanges.get(guildId);
+                if (saved != null && saved == scheduler.getChanges()) {
+                    if (position > 0)
+                        QueueSnapshot.writePosition(file, position);
+                    continue;
+                }
+
+                QueueSnapshot snapshot = scheduler.snapshot(Static.Audio.SNAPSHOT_LIMIT);
+                Guild guild = Main.jda.getGuildById(guildId);
+                VoiceChannel channel = null;
+                if (guild != null)
+                    channel = guild.getAudioManager().isConnected() ? guild.getAudioManager().getConnectedChannel() : guild.getAudioManager().getQueuedAudioConnection();
+
+                if (snapshot.entries.isEmpty() || channel == null) {
+                    if (shutdown)
+                        continue;
+                    Files.deleteIfExists(file.toPath());
+                } else {
+                    snapshot.position = position;
+                    snapshot.voiceChannel = channel.getIdLong();
+                    snapshot.volume = volume;
+                    snapshot.write(file, playerManager, Static.Audio.SNAPSHOT_MAX_SIZE);
+                }
+                savedChanges.put(guildId, snapshot.changes);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (shutdown)
+            return;
+
+        savedChanges.keySet().removeIf(guildId -> {
+            if (musicManagers.containsKey(guildId))
+                return false;
+            new File(QUEUE_DIR, guildId + ".bin").delete();
+            return true;
+        });
+    }
+
+    /**
+     * Restores the queue snapshots written before the last shutdown: the bot reconnects to the saved voice channel and
+     * continues the current track at the saved position. Must be called once JDA is ready.
+     */
+    public void restoreQueues() {
+        File[] files = QUEUE_DIR.listFiles((dir, name) -> name.matches("\\d+\\.bin"));
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            long guildId = Long.parseLong(file.getName().substring(0, file.getName().length() - 4));
+            try {
+                Guild guild = Main.jda.getGuildById(guildId);
+                QueueSnapshot snapshot = QueueSnapshot.read(file, guildId);
+                VoiceChannel channel = guild != null ? guild.getVoiceChannelById(snapshot.voiceChannel) : null;
+                if (channel == null || snapshot.entries.isEmpty()) {
+                    file.delete();
+                    continue;
+                }
+
+                GuildMusicManager musicManager = getGuildAudioPlayer(guild);
+                if (connectToVoiceChannel(guild.getAudioManager(), channel) || guild.getAudioManager().isConnected())
+                    musicManager.scheduler.restore(snapshot);
+            } catch (Exception e) {
+                System.out.println("Could not restore the queue of " + guildId + ": " + e.getMessage());
+                file.delete();
+            }
+        }
     }
 
     public boolean connectToVoiceChannel(AudioManager audioManager, VoiceChannel voiceChannel) {
@@ -71,71 +280,228 @@ public class AudioCore extends ListenerAdapter {
     public void load(MessageReceivedEvent event, String trackUrl) {
         GuildMusicManager musicManager = getGuildAudioPlayer(event.getGuild());
 
-        playerManager.loadItemOrdered(musicManager, trackUrl, new AudioLoadResultHandler() {
+        loadItem(musicManager, trackUrl).whenComplete((item, error) -> {
+            if (error != null)
+                event.getTextChannel().sendMessage(loadFailedMessage(event, trackUrl, Futures.unwrap(error))).queue();
+            else
+                queueItem(event, musicManager, trackUrl, item, embed -> ChannelNotifier.notify(event.getTextChannel(), embed));
+        });
+    }
+
+    /**
+     * Searches YouTube for a video (or a playlist) and queues it. Nothing blocks the calling thread: a "searching"
+     * message is sent right away and edited in place with the result, the search runs on the I/O pool of the
+     * YouTubeAPI and the track is loaded by lavaplayer. Stopping the guild drops the result of a running search.
+     */
+    public CompletableFuture<Void> search(MessageReceivedEvent event, String query, boolean playlist) {
+        GuildMusicManager musicManager = getGuildAudioPlayer(event.getGuild());
+        int generation = musicManager.getGeneration();
+        Consumer<MessageEmbed> reply = editReply(event, Message.INFO(event, "Searching for ***" + query + "***...").build());
+
+        CompletableFuture<String> identifier = playlist
+                ? YouTubeAPI.searchPlaylistAsync(query).thenApply(result -> result.getId().getPlaylistId())
+                : YouTubeAPI.searchVideoAsync(query).thenApply(result -> result.getId().getVideoId());
+
+        return Futures.timeout(identifier, Static.YouTube.SEARCH_TIMEOUT)
+                .thenCompose(id -> Futures.timeout(loadItem(musicManager, id), Static.Audio.LOAD_TIMEOUT))
+                .thenAccept(item -> {
+                    if (musicManager.getGeneration() != generation)
+                        throw new CancellationException();
+                    queueItem(event, musicManager, query, item, reply);
+                })
+                .exceptionally(error -> {
+                    reply.accept(searchFailedMessage(event, query, Futures.unwrap(error)));
+                    return null;
+                });
+    }
+
+    /**
+     * Sends the message now and returns a reply that edits it, or sends a new message if sending it failed.
+     */
+    private Consumer<MessageEmbed> editReply(MessageReceivedEvent event, MessageEmbed first) {
+        CompletionStage<net.dv8tion.jda.core.entities.Message> sent = event.getTextChannel().sendMessage(first).submit();
+        return embed -> sent.whenComplete((message, error) -> {
+            if (message != null)
+                message.editMessage(embed).queue();
+            else
+                event.getTextChannel().sendMessage(embed).queue();
+        });
+    }
+
+    /**
+     * Searches YouTube and queues the first count videos in search order with one message. The videos are loaded in
+     * parallel, videos that fail to load are left out.
+     */
+    public CompletableFuture<Void> searchTop(MessageReceivedEvent event, String query, int count) {
+        GuildMusicManager musicManager = getGuildAudioPlayer(event.getGuild());
+        int generation = musicManager.getGeneration();
+        Consumer<MessageEmbed> reply = editReply(event, Message.INFO(event, "Searching for the top " + count + " results of ***" + query + "***...").build());
+
+        return Futures.timeout(YouTubeAPI.searchVideosAsync(query, count), Static.YouTube.SEARCH_TIMEOUT)
+                .thenCompose(results -> {
+                    List<CompletableFuture<AudioItem>> loads = new ArrayList<>(results.size());
+                    for (SearchResult result : results)
+                        loads.add(Futures.timeout(loadItem(null, result.getId().getVideoId()), Static.Audio.LOAD_TIMEOUT)
+                                .exceptionally(error -> null)); // one broken video does not fail the others
+
+                    return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).thenApply(done -> {
+                        List<AudioTrack> tracks = new ArrayList<>(loads.size());
+                        for (CompletableFuture<AudioItem> load : loads)
+                            if (load.join() instanceof AudioTrack)
+                                tracks.add((AudioTrack) load.join());
+                        return tracks;
+                    });
+                })
+                .thenAccept(tracks -> {
+                    if (musicManager.getGeneration() != generation)
+                        throw new CancellationException();
+                    if (tracks.isEmpty())
+                        reply.accept(noMatchesMessage(event, query));
+                    else if (event.getMember().getVoiceState().getChannel() == null)
+                        reply.accept(Message.ERROR(event, "You have to be connected to a VoiceChannel!").build());
+                    else if (connectToVoiceChannel(event.getGuild().getAudioManager(), event.getMember().getVoiceState().getChannel()) || event.getGuild().getAudioManager().isConnected())
+                        musicManager.scheduler.queueTracks(tracks, query, event, reply);
+                })
+                .exceptionally(error -> {
+                    reply.accept(searchFailedMessage(event, query, Futures.unwrap(error)));
+                    return null;
+                });
+    }
+
+    /**
+     * Loads a track or playlist, tracks come from the track cache if possible.
+     *
+     * @param musicManager loads for the same manager complete in order, null to load in parallel to everything else
+     * @return the loaded item, null if nothing was found
+     */
+    private CompletableFuture<AudioItem> loadItem(GuildMusicManager musicManager, String identifier) {
+        // a hit completes right away, so it can overtake a remote load of the same guild that is still running
+        byte[] cached = trackCache.get(identifier);
+        AudioTrack decoded = cached != null ? AudioInfo.decode(playerManager, cached) : null;
+        if (decoded != null)
+            return CompletableFuture.completedFuture(decoded);
+
+        CompletableFuture<AudioItem> result = new CompletableFuture<>();
+        AudioLoadResultHandler handler = new AudioLoadResultHandler() {
             @Override
             public void trackLoaded(AudioTrack track) {
-                play(event, musicManager, track);
+                byte[] encoded = track.getInfo().isStream ? null : AudioInfo.encode(playerManager, track);
+                if (encoded != null) {
+                    trackCache.put(identifier, encoded);
+                    if (!identifier.equals(track.getIdentifier()))
+                        trackCache.put(track.getIdentifier(), encoded);
+                }
+                result.complete(track);
             }
 
             @Override
             public void playlistLoaded(AudioPlaylist playlist) {
-                playPlaylist(event, musicManager, playlist);
+                result.complete(playlist);
             }
 
             @Override
             public void noMatches() {
-                event.getTextChannel().sendMessage(noMatchesMessage(event, trackUrl)).queue();
+                result.complete(null);
             }
 
             @Override
             public void loadFailed(FriendlyException exception) {
-                event.getTextChannel().sendMessage(loadFailedMessage(event, trackUrl, exception)).queue();
+                result.completeExceptionally(exception);
             }
-        });
+        };
+
+        if (musicManager != null)
+            playerManager.loadItemOrdered(musicManager, identifier, handler);
+        else
+            playerManager.loadItem(identifier, handler);
+        return result;
+    }
+
+    private void queueItem(MessageReceivedEvent event, GuildMusicManager musicManager, String trackUrl, AudioItem item, Consumer<MessageEmbed> reply) {
+        if (item instanceof AudioTrack)
+            play(event, musicManager, (AudioTrack) item, reply);
+        else if (item instanceof AudioPlaylist)
+            playPlaylist(event, musicManager, (AudioPlaylist) item, reply);
+        else
+            reply.accept(noMatchesMessage(event, trackUrl));
     }
 
     private MessageEmbed noMatchesMessage(MessageReceivedEvent event, String trackUrl){
         return Message.ERROR(event, "No matches were found for: " + trackUrl).build();
     }
 
-    private MessageEmbed loadFailedMessage(MessageReceivedEvent event, String trackUrl, FriendlyException exception){
+    private MessageEmbed loadFailedMessage(MessageReceivedEvent event, String trackUrl, Throwable exception){
         return Message.ERROR(event, "Could not play: " + exception.getMessage()).build();
     }
 
+    private MessageEmbed searchFailedMessage(MessageReceivedEvent event, String query, Throwable error){
+        if (error instanceof YouTubeAPI.NoResultException)
+            return Message.ERROR(event, "No results found for: " + query).build();
+        if (error instanceof CancellationException)
+            return Message.INFO(event, "Search for ***" + query + "*** cancelled").build();
+        if (error instanceof TimeoutException)
+            return Message.ERROR(event, "The search for ***" + query + "*** timed out, please try again").build();
+        if (error instanceof FriendlyException)
+            return loadFailedMessage(event, query, error);
+
+        error.printStackTrace();
+        return Message.ERROR(event, "Could not search for: " + query).build();
+    }
+
     private MessageEmbed skipTrackMessage(MessageReceivedEvent event){
         return Message.INFO(event, "Skipped to next track.").build();
     }
 
 
     public void play(MessageReceivedEvent event, GuildMusicManager musicManager, AudioTrack track) {
+        play(event, musicManager, track, embed -> ChannelNotifier.notify(event.getTextChannel(), embed));
+    }
+
+    public void play(MessageReceivedEvent event, GuildMusicManager musicManager, AudioTrack track, Consumer<MessageEmbed> reply) {
         if (event.getMember().getVoiceState().getChannel() == null)
-            event.getTextChannel().sendMessage(Message.ERROR(event, "You have to be connected to a VoiceChannel!").build()).queue();
+            reply.accept(Message.ERROR(event, "You have to be connected to a VoiceChannel!").build());
         else {
             if(connectToVoiceChannel(event.getGuild().getAudioManager(), event.getMember().getVoiceState().getChannel()) || event.getGuild().getAudioManager().isConnected())
-                musicManager.scheduler.queue(track, event);
+                musicManager.scheduler.queue(track, event, reply);
         }
     }
 
     public void playPlaylist(MessageReceivedEvent event, GuildMusicManager musicManager, AudioPlaylist playlist) {
+        playPlaylist(event, musicManager, playlist, embed -> ChannelNotifier.notify(event.getTextChannel(), embed));
+    }
+
+    public void playPlaylist(MessageReceivedEvent event, GuildMusicManager musicManager, AudioPlaylist playlist, Consumer<MessageEmbed> reply) {
         if (event.getMember().getVoiceState().getChannel() == null)
-            event.getTextChannel().sendMessage(Message.ERROR(event, "You have to be connected to a VoiceChannel!").build()).queue();
+            reply.accept(Message.ERROR(event, "You have to be connected to a VoiceChannel!").build());
         else {
             if(connectToVoiceChannel(event.getGuild().getAudioManager(), event.getMember().getVoiceState().getChannel()) || event.getGuild().getAudioManager().isConnected())
-                musicManager.scheduler.queuePlaylist(playlist, event);
+                musicManager.scheduler.queuePlaylist(playlist, event, reply);
         }
     }
 
     public void skipTrack(MessageReceivedEvent event) {
+        skipTrack(event, 1);
+    }
+
+    /**
+     * @param offset 1 = next track
+     */
+    public void skipTrack(MessageReceivedEvent event, int offset) {
         GuildMusicManager musicManager = getGuildAudioPlayer(event.getGuild());
         event.getTextChannel().sendMessage(skipTrackMessage(event)).queue();
 
-        if (!musicManager.scheduler.nextTrack(false))
+        if (!musicManager.scheduler.jump(offset, false))
             if (event.getGuild().getAudioManager().isConnected())
                 event.getGuild().getAudioManager().closeAudioConnection();
     }
 
 
     public boolean stopPlaying(Guild guild){
+        // searches may still be running while the bot is not connected yet, they must not queue anything afterwards
+        GuildMusicManager running = musicManagers.get(guild.getIdLong());
+        if (running != null)
+            running.cancelRequests();
+
         if (guild.getAudioManager().isConnected()){
             GuildMusicManager manager = getGuildAudioPlayer(guild);
 
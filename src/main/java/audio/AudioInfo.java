@@ -5,29 +5,154 @@ package audio;
     (c) nils 2018
 */
 
-import com.google.api.services.youtube.YouTube;
-import com.google.api.services.youtube.model.SearchResult;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
+import core.Main;
+import net.dv8tion.jda.core.entities.Guild;
 import net.dv8tion.jda.core.entities.Member;
-import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * A queued track. Only the ids of the guild, the text channel and the requester are kept - holding on to the
+ * MessageReceivedEvent would pin its whole message/member/guild graph for as long as the track is queued.
+ * The JDA entities are looked up when they are needed.
+ *
+ * Tracks far down the queue (e.g. of large playlists) are only stored in lavaplayer's encoded form, the scheduler
+ * decodes them a few tracks before they are played with {@link #materialize(AudioPlayerManager)}.
+ */
 public class AudioInfo {
 
-    private final AudioTrack TRACK;
-    private final MessageReceivedEvent EVENT;
+    private AudioTrack TRACK;
+    private final byte[] ENCODED;
+    private final long GUILD;
+    private final long CHANNEL;
+    private final long REQUESTER;
 
 
     public AudioInfo(AudioTrack track, MessageReceivedEvent event) {
+        this(track, event.getGuild().getIdLong(), event.getChannel().getIdLong(), event.getAuthor().getIdLong());
+    }
+
+    public AudioInfo(AudioTrack track, long guildId, long channelId, long requesterId) {
+        this(track, null, guildId, channelId, requesterId);
+    }
+
+    private AudioInfo(AudioTrack track, byte[] encoded, long guildId, long channelId, long requesterId) {
         this.TRACK = track;
-        this.EVENT = event;
+        this.ENCODED = encoded;
+        this.GUILD = guildId;
+        this.CHANNEL = channelId;
+        this.REQUESTER = requesterId;
+    }
+
+    /**
+     * @return an entry that only holds the encoded track, null if the track can not be encoded
+     */
+    public static AudioInfo encoded(AudioPlayerManager manager, AudioTrack track, MessageReceivedEvent event) {
+        byte[] encoded = encode(manager, track);
+        if (encoded == null)
+            return null;
+        return new AudioInfo(null, encoded, event.getGuild().getIdLong(), event.getChannel().getIdLong(), event.getAuthor().getIdLong());
     }
 
-    public AudioTrack getTrack() {
+    /**
+     * @return an entry of an already encoded track, e.g. one read from a queue snapshot
+     */
+    public static AudioInfo encoded(byte[] encoded, long guildId, long channelId, long requesterId) {
+        return new AudioInfo(null, encoded, guildId, channelId, requesterId);
+    }
+
+    public static byte[] encode(AudioPlayerManager manager, AudioTrack track) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            manager.encodeTrack(new MessageOutput(out), track);
+            return out.toByteArray();
+        } catch (IOException e){
+            return null;
+        }
+    }
+
+    public static AudioTrack decode(AudioPlayerManager manager, byte[] encoded) {
+        try {
+            DecodedTrackHolder holder = manager.decodeTrack(new MessageInput(new ByteArrayInputStream(encoded)));
+            return holder != null ? holder.decodedTrack : null;
+        } catch (IOException e){
+            return null;
+        }
+    }
+
+    /**
+     * @return the track, or null if it is only stored encoded at the moment
+     */
+    public synchronized AudioTrack getTrack() {
         return TRACK;
     }
 
-    public MessageReceivedEvent getEvent() {
-        return EVENT;
+    /**
+     * @return the encoded track, null if the track can not be encoded
+     */
+    public synchronized byte[] getEncoded(AudioPlayerManager manager) {
+        return ENCODED != null ? ENCODED : encode(manager, TRACK);
+    }
+
+    /**
+     * Decodes the track if it is only stored encoded.
+     *
+     * @return false if the track could not be decoded
+     */
+    public synchronized boolean materialize(AudioPlayerManager manager) {
+        if (TRACK == null && ENCODED != null)
+            TRACK = decode(manager, ENCODED);
+        return TRACK != null;
+    }
+
+    /**
+     * Drops the decoded track again if the entry has an encoded form to fall back to.
+     */
+    public synchronized void release() {
+        if (ENCODED != null)
+            TRACK = null;
+    }
+
+    public long getGuildId() {
+        return GUILD;
+    }
+
+    public long getChannelId() {
+        return CHANNEL;
+    }
+
+    public long getRequesterId() {
+        return REQUESTER;
+    }
+
+    /**
+     * @return the guild, or null if the bot is no longer in it (or not connected, e.g. in the load test)
+     */
+    public Guild getGuild() {
+        return Main.jda != null ? Main.jda.getGuildById(GUILD) : null;
+    }
+
+    /**
+     * @return the channel the track was requested in, or null if it was deleted
+     */
+    public TextChannel getTextChannel() {
+        return Main.jda != null ? Main.jda.getTextChannelById(CHANNEL) : null;
+    }
+
+    /**
+     * @return the member who requested the track, or null if they left the guild
+     */
+    public Member getRequester() {
+        Guild guild = getGuild();
+        return guild != null ? guild.getMemberById(REQUESTER) : null;
     }
 }
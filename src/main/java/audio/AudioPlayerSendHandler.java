@@ -1,44 +1,69 @@
 package audio;
 
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
-import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
 import net.dv8tion.jda.core.audio.AudioSendHandler;
 
+import java.nio.ByteBuffer;
+
 /**
- * This is a wrapper around AudioPlayer which makes it behave as an AudioSendHandler for JDA. As JDA calls canProvide
- * before every call to provide20MsAudio(), we pull the frame in canProvide() and use the frame we already pulled in
- * provide20MsAudio().
+ * This is a wrapper around the active AudioPlayer of a TrackScheduler which makes it behave as an AudioSendHandler for
+ * JDA. As JDA calls canProvide before every call to provide20MsAudio(), we pull the frame in canProvide() and use the
+ * frame we already pulled in provide20MsAudio().
+ *
+ * Both methods are only called by the audio send thread of the guild's connection. Frames are written into one reused
+ * buffer, and as JDA needs an array of the exact packet length, one array per packet length is kept and reused - JDA
+ * copies the data before it asks for the next frame. After a few seconds of playback no more allocations happen.
  */
 public class AudioPlayerSendHandler implements AudioSendHandler {
-  private final AudioPlayer audioPlayer;
-  private AudioFrame lastFrame;
+  private final TrackScheduler scheduler;
+  private final MutableAudioFrame frame;
+  private final byte[][] packets;
+  private boolean frameProvided = false;
 
   /**
-   * @param audioPlayer Audio player to wrap.
+   * @param scheduler Scheduler whose active player is wrapped.
    */
-  public AudioPlayerSendHandler(AudioPlayer audioPlayer) {
-    this.audioPlayer = audioPlayer;
+  public AudioPlayerSendHandler(TrackScheduler scheduler) {
+    this.scheduler = scheduler;
+
+    int maxLength = StandardAudioDataFormats.DISCORD_OPUS.maximumChunkSize();
+    this.frame = new MutableAudioFrame();
+    this.frame.setBuffer(ByteBuffer.allocate(maxLength));
+    this.packets = new byte[maxLength + 1][];
   }
 
   @Override
   public boolean canProvide() {
-    if (lastFrame == null) {
-      lastFrame = audioPlayer.provide();
+    if (!frameProvided) {
+      AudioPlayer audioPlayer = scheduler.getPlayer();
+      frameProvided = audioPlayer.provide(frame);
+
+      // the track ended within this call and the scheduler swapped to the preloaded one, take its first frame now
+      if (!frameProvided && audioPlayer != scheduler.getPlayer()) {
+        frameProvided = scheduler.getPlayer().provide(frame);
+      }
     }
 
-    return lastFrame != null;
+    return frameProvided;
   }
 
   @Override
   public byte[] provide20MsAudio() {
-    if (lastFrame == null) {
-      lastFrame = audioPlayer.provide();
+    if (!canProvide()) {
+      return null;
     }
+    frameProvided = false;
 
-    byte[] data = lastFrame != null ? lastFrame.data : null;
-    lastFrame = null;
+    int length = frame.getDataLength();
+    byte[] packet = packets[length];
+    if (packet == null) {
+      packet = packets[length] = new byte[length];
+    }
+    frame.getData(packet, 0);
 
-    return data;
+    return packet;
   }
 
   @Override
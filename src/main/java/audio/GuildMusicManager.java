@@ -2,35 +2,127 @@ package audio;
 
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
-import net.dv8tion.jda.core.entities.Guild;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Holder for both the player and a track scheduler for one guild.
  */
 public class GuildMusicManager {
   /**
-   * Audio player for the guild.
+   * Track scheduler for the players, it owns the active player and a standby player for gapless track changes.
    */
-  public final AudioPlayer player;
+  public final TrackScheduler scheduler;
   /**
-   * Track scheduler for the player.
+   * Send handler of the guild, created once and installed on the audio manager whenever it is missing there.
    */
-  public final TrackScheduler scheduler;
+  private final AudioPlayerSendHandler sendHandler;
+  /**
+   * Time of the last music command of the guild, used to evict idle managers.
+   */
+  private volatile long lastUsed = System.currentTimeMillis();
+  /**
+   * {@link #ACTIVE} until the reaper claims the manager with a CAS, then {@link #RETIRING} while it checks for a
+   * concurrent touch and releases the manager, and {@link #RETIRED} once it was evicted.
+   */
+  private final AtomicInteger state = new AtomicInteger(ACTIVE);
+  private static final int ACTIVE = 0;
+  private static final int RETIRING = 1;
+  private static final int RETIRED = 2;
+  /**
+   * Counts the stops of the guild, searches started before a stop drop their result.
+   */
+  private final AtomicInteger generation = new AtomicInteger();
 
   /**
-   * Creates a player and a track scheduler.
-   * @param manager Audio player manager to use for creating the player.
+   * Creates the players and a track scheduler.
+   * @param manager Audio player manager to use for creating the players.
    */
   public GuildMusicManager(AudioPlayerManager manager) {
-    player = manager.createPlayer();
-    scheduler = new TrackScheduler(player);
+    AudioPlayer player = manager.createPlayer();
+    AudioPlayer standby = manager.createPlayer();
+    scheduler = new TrackScheduler(player, standby, manager);
     player.addListener(scheduler);
+    standby.addListener(scheduler);
+    sendHandler = new AudioPlayerSendHandler(scheduler);
   }
 
   /**
    * @return Wrapper around AudioPlayer to use it as an AudioSendHandler.
    */
   public AudioPlayerSendHandler getSendHandler() {
-    return new AudioPlayerSendHandler(player);
+    return sendHandler;
+  }
+
+  /**
+   * Marks the manager as used now. This is a volatile write and a volatile read, it only waits while the reaper is
+   * evicting this manager.
+   * @return false if the manager was evicted, the caller has to fetch a new one.
+   */
+  public boolean touch() {
+    lastUsed = System.currentTimeMillis();
+    while (true) {
+      switch (state.get()) {
+        case ACTIVE:
+          return true;
+        case RETIRED:
+          return false;
+        default:
+          // the reaper decides between keeping and evicting the manager
+          Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * Evicts the manager if it was not touched for the given time. After claiming the manager, the time of the last use
+   * is read again: a touch that saw the manager active wrote its time before the claim, so the manager is kept. A
+   * touch that comes later waits for the release and then creates a new manager.
+   * @param timeout Idle time in milliseconds.
+   * @param release Run before touches see the manager retired, it detaches the manager from the guild.
+   * @return true if the manager was evicted, it has to be removed and destroyed afterwards.
+   */
+  public boolean retireIfIdle(long timeout, Runnable release) {
+    long used = lastUsed;
+    if (System.currentTimeMillis() - used < timeout || !state.compareAndSet(ACTIVE, RETIRING))
+      return false;
+    if (lastUsed != used) {
+      state.set(ACTIVE);
+      return false;
+    }
+    try {
+      release.run();
+    } finally {
+      state.set(RETIRED);
+    }
+    return true;
+  }
+
+  /**
+   * @return Time of the last use in milliseconds.
+   */
+  public long getLastUsed() {
+    return lastUsed;
+  }
+
+  /**
+   * @return Current generation, compare it with a later call to find out whether the guild was stopped in between.
+   */
+  public int getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Makes all running searches drop their result.
+   */
+  public void cancelRequests() {
+    generation.incrementAndGet();
+  }
+
+  /**
+   * Drops the queue and destroys the players, the manager can not be used afterwards.
+   */
+  public void destroy() {
+    scheduler.destroy();
   }
 }
@@ -0,0 +1,148 @@
+package audio;
+/*
+    Created by nils on 16.02.2018 at 18:40.
+    
+    (c) nils 2018
+*/
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The queue of one guild as it is written to disk, so music sessions survive a restart. Tracks are stored in
+ * lavaplayer's encoded form:
+ *
+ *  header (40 bytes): magic, version, position of the current track (long), its complement (long), voice channel id,
+ *                     volume, loop mode
+ *  queue: cursor, entry count, entries
+ *  entry: text channel id, requester id, length of the encoded track (int), encoded track
+ *
+ * The position has a fixed offset, while the queue does not change only that field is rewritten in place. It is
+ * followed by its complement, a position torn by a crash while rewriting it does not match and is read as 0.
+ */
+class QueueSnapshot {
+
+    private static final int MAGIC = 0x4D515545; // MQUE
+    private static final int VERSION = 2;
+
+    private static final int POSITION = 8;
+
+    final long changes;
+    final TrackScheduler.LoopMode loopMode;
+    final int cursor;
+    final List<AudioInfo> entries;
+
+    long position;
+    long voiceChannel;
+    int volume = 100;
+
+    /**
+     * @param changes the change count of the scheduler the snapshot was taken at
+     * @param cursor index of the current entry, -1 if none is current
+     */
+    QueueSnapshot(long changes, TrackScheduler.LoopMode loopMode, int cursor, List<AudioInfo> entries) {
+        this.changes = changes;
+        this.loopMode = loopMode;
+        this.cursor = cursor;
+        this.entries = entries;
+    }
+
+    /**
+     * Writes the snapshot to a temp file which then replaces the file, so a crash never leaves a broken snapshot.
+     * Entries that would grow the file beyond maxSize bytes are left out.
+     */
+    void write(File file, AudioPlayerManager manager, int maxSize) throws IOException {
+        ByteArrayOutputStream queue = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(queue);
+        int count = 0;
+        for (AudioInfo info : entries) {
+            byte[] encoded = info.getEncoded(manager);
+            if (encoded == null)
+                continue;
+            if (queue.size() + encoded.length + 20 > maxSize)
+                break;
+            out.writeLong(info.getChannelId());
+            out.writeLong(info.getRequesterId());
+            out.writeInt(encoded.length);
+            out.write(encoded);
+            count++;
+        }
+
+        if (file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream header = new DataOutputStream(stream);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeLong(position);
+            header.writeLong(~position);
+            header.writeLong(voiceChannel);
+            header.writeInt(volume);
+            header.writeInt(loopMode.ordinal());
+            header.writeInt(Math.min(cursor, count - 1));
+            header.writeInt(count);
+            queue.writeTo(stream);
+            stream.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void writePosition(File file, long position) throws IOException {
+        if (!file.exists())
+            return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // one write of both fields, they only disagree if the write was torn
+            raf.seek(POSITION);
+            raf.write(ByteBuffer.allocate(16).putLong(position).putLong(~position).array());
+        }
+    }
+
+    static QueueSnapshot read(File file, long guildId) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException(file.getPath() + " is no queue snapshot");
+
+            long position = in.readLong();
+            if (in.readLong() != ~position)
+                position = 0; // the track starts from the beginning instead of at a broken position
+            long voiceChannel = in.readLong();
+            int volume = in.readInt();
+            TrackScheduler.LoopMode loopMode = TrackScheduler.LoopMode.values()[in.readInt()];
+            int cursor = in.readInt();
+            int count = in.readInt();
+
+            List<AudioInfo> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long channel = in.readLong();
+                long requester = in.readLong();
+                byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                entries.add(AudioInfo.encoded(encoded, guildId, channel, requester));
+            }
+
+            QueueSnapshot snapshot = new QueueSnapshot(0, loopMode, cursor, entries);
+            snapshot.position = position;
+            snapshot.voiceChannel = voiceChannel;
+            snapshot.volume = volume;
+            return snapshot;
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+package audio;
+/*
+    Created by nils on 14.02.2018 at 20:05.
+    
+    (c) nils 2018
+*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Ring buffer of queued tracks with a cursor on the current one. Looping the queue only moves the cursor, so nothing
+ * is copied or re-enqueued, and the current index as well as any position can be looked up directly.
+ *
+ * Indices passed to and returned from this class are absolute (0 = oldest entry still in the queue), offsets are
+ * counted from the cursor (1 = next track). The class is not thread-safe, the TrackScheduler guards it with its lock.
+ */
+class TrackQueue {
+
+    private AudioInfo[] items = new AudioInfo[16];
+    private int head = 0;
+    private int size = 0;
+    private int cursor = -1;
+
+    int size(){
+        return size;
+    }
+
+    /**
+     * @return the index of the current track, -1 if no track is current
+     */
+    int getCursor(){
+        return cursor;
+    }
+
+    /**
+     * @return the amount of tracks after the current one
+     */
+    int upcoming(){
+        return size - cursor - 1;
+    }
+
+    AudioInfo get(int index){
+        if (index < 0 || index >= size)
+            return null;
+        return items[(head + index) & (items.length - 1)];
+    }
+
+    AudioInfo current(){
+        return get(cursor);
+    }
+
+    void add(AudioInfo info){
+        if (size == items.length)
+            resize(items.length * 2);
+        items[(head + size++) & (items.length - 1)] = info;
+    }
+
+    void addAll(List<AudioInfo> infos){
+        for (AudioInfo info : infos)
+            add(info);
+    }
+
+    /**
+     * Moves the cursor to the next track.
+     *
+     * @param keepPlayed true to loop the queue (the cursor wraps around), false to drop the played tracks
+     * @return the new current track, or null if the queue is empty
+     */
+    AudioInfo advance(boolean keepPlayed){
+        return jump(1, keepPlayed);
+    }
+
+    /**
+     * Moves the cursor by the given offset, a loop jump is O(1) and dropping the skipped tracks costs one array
+     * write per dropped track.
+     *
+     * @return the new current track, or null if the offset is behind the end of the queue (the queue is cleared then)
+     */
+    AudioInfo jump(int offset, boolean keepPlayed){
+        if (size == 0)
+            return null;
+
+        int target = cursor + offset;
+        if (keepPlayed) {
+            cursor = Math.floorMod(target, size);
+        } else {
+            dropFirst(Math.min(target, size));
+            cursor = size > 0 ? 0 : -1;
+        }
+        return current();
+    }
+
+    /**
+     * Removes the current track, the track after it becomes current.
+     *
+     * @param wrap true to continue with the first track if the removed one was the last
+     */
+    AudioInfo removeCurrent(boolean wrap){
+        if (cursor < 0)
+            return null;
+
+        removeRange(cursor, cursor + 1);
+        if (cursor >= size)
+            cursor = wrap && size > 0 ? 0 : -1;
+        if (cursor < 0)
+            clear();
+        return current();
+    }
+
+    /**
+     * Shuffles the upcoming tracks, played and current tracks keep their place.
+     */
+    void shuffle(Random random){
+        for (int i = size - 1; i > cursor + 1; i--)
+            swap(i, cursor + 1 + random.nextInt(i - cursor));
+    }
+
+    /**
+     * Moves an upcoming track, both offsets are counted from the cursor (1 = next track).
+     */
+    boolean move(int from, int to){
+        int fromIndex = cursor + from;
+        int toIndex = cursor + to;
+        if (from < 1 || to < 1 || fromIndex >= size || toIndex >= size)
+            return false;
+
+        AudioInfo moved = get(fromIndex);
+        int step = fromIndex < toIndex ? 1 : -1;
+        for (int i = fromIndex; i != toIndex; i += step)
+            set(i, get(i + step));
+        set(toIndex, moved);
+        return true;
+    }
+
+    /**
+     * Removes the upcoming tracks from offset from (inclusive) to offset to (exclusive), counted from the cursor.
+     *
+     * @return the amount of removed tracks
+     */
+    int removeUpcoming(int from, int to){
+        int fromIndex = cursor + Math.max(from, 1);
+        int toIndex = Math.min(cursor + to, size);
+        if (fromIndex >= toIndex)
+            return 0;
+        removeRange(fromIndex, toIndex);
+        return toIndex - fromIndex;
+    }
+
+    void clear(){
+        for (int i = 0; i < size; i++)
+            set(i, null);
+        head = 0;
+        size = 0;
+        cursor = -1;
+    }
+
+    /**
+     * @return a copy of the upcoming tracks
+     */
+    List<AudioInfo> getUpcoming(){
+        List<AudioInfo> upcoming = new ArrayList<>(upcoming());
+        for (int i = cursor + 1; i < size; i++)
+            upcoming.add(get(i));
+        return upcoming;
+    }
+
+    private void set(int index, AudioInfo info){
+        items[(head + index) & (items.length - 1)] = info;
+    }
+
+    private void swap(int a, int b){
+        AudioInfo info = get(a);
+        set(a, get(b));
+        set(b, info);
+    }
+
+    private void dropFirst(int n){
+        for (int i = 0; i < n; i++)
+            set(i, null);
+        head = (head + n) & (items.length - 1);
+        size -= n;
+        cursor = Math.max(cursor - n, -1);
+    }
+
+    private void removeRange(int from, int to){
+        int removed = to - from;
+        for (int i = from; i + removed < size; i++)
+            set(i, get(i + removed));
+        for (int i = size - removed; i < size; i++)
+            set(i, null);
+        size -= removed;
+        if (cursor >= to)
+            cursor -= removed;
+    }
+
+    private void resize(int capacity){
+        AudioInfo[] resized = new AudioInfo[capacity];
+        for (int i = 0; i < size; i++)
+            resized[i] = get(i);
+        items = resized;
+        head = 0;
+    }
+
+}
@@ -3,124 +3,465 @@ package audio;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.SearchResult;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
 import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
 import commands.chat.commands.music.Playlist;
+import commands.chat.tools.ChannelNotifier;
 import commands.chat.tools.Message;
+import core.files.ServerFile;
 import core.tools.Tools;
 import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.MessageEmbed;
+import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.entities.VoiceChannel;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import utils.Static;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * This class schedules tracks for the audio player. It contains the queue of tracks.
+ *
+ * The queue, the current track and the loop mode are only touched while holding the lock of the scheduler. The
+ * player is never called while holding it: lavaplayer dispatches onTrackEnd with its own track switch lock held, so
+ * calling into the player from inside our lock could deadlock against the playback thread. Instead every state change
+ * queues its player calls while holding the lock, and they are run afterwards in that order by one thread at a time,
+ * so a slow thread can not start a track after a newer one.
+ *
+ * Playlist tracks are queued in their encoded form, only the current track and the next
+ * {@link Static.Audio#PRELOAD_AHEAD} ones are kept decoded.
+ *
+ * Tracks change without a gap: {@link Static.Audio#PRELOAD_TIME} before the end of a track the next one is started on
+ * a standby player. Nothing pulls frames from it, so it only connects and fills its frame buffer. When the current
+ * track ends the players swap roles and the send handler continues with the buffered frames right away.
  */
 public class TrackScheduler extends AudioEventAdapter { 
-    private final AudioPlayer player;
-    private final BlockingQueue<AudioInfo> queue;
+    private static final ScheduledExecutorService preloader = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Audio-Preloader");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    private AudioInfo current;
+    // the player the send handler pulls from, only swapped while holding the lock
+    private volatile AudioPlayer player;
+    // the player the next track is buffered on
+    private AudioPlayer standby;
+    private final AudioPlayerManager manager;
+    private final TrackQueue queue;
+    private final Random random = new Random();
 
-    private boolean repeat = false;
-    private boolean repeatCurrent = false;
+    // the track object handed to the player, a clone of the queued one (lavaplayer tracks can only be played once)
+    private AudioTrack playing;
+
+    private LoopMode loopMode = LoopMode.OFF;
+
+    // counts the changes of the queue, the cursor and the loop mode, a queue snapshot is only rewritten if it moved
+    private long changes = 0;
+
+    // encoded entries the scheduler decoded, released again once they leave the preload window
+    private final List<AudioInfo> materialized = new ArrayList<>();
+
+    // the track buffering on the standby player and the entry it was cloned from
+    private AudioTrack preloaded;
+    private AudioInfo preloadedInfo;
+
+    // player calls in the order of the state changes they belong to, and whether a thread is running them
+    private final ArrayDeque<Runnable> actions = new ArrayDeque<>();
+    private boolean runningActions = false;
+
+    public enum LoopMode { OFF, TRACK, QUEUE }
 
     /**
      * @param player The audio player this scheduler uses
+     * @param standby The audio player the next track is preloaded on
+     * @param manager The manager used to decode lazily queued tracks
      */
-    public TrackScheduler(AudioPlayer player) {
+    public TrackScheduler(AudioPlayer player, AudioPlayer standby, AudioPlayerManager manager) {
         this.player = player;
-        this.queue = new LinkedBlockingQueue<>();
+        this.standby = standby;
+        this.manager = manager;
+        this.queue = new TrackQueue();
     }
 
-    public BlockingQueue<AudioInfo> getQueue() {
-        return queue;
+    /**
+     * @return a copy of the upcoming tracks
+     */
+    public synchronized List<AudioInfo> getQueue() {
+        return queue.getUpcoming();
     }
 
+    public synchronized int getQueueSize() {
+        return queue.upcoming();
+    }
+
+    /**
+     * @return the index of the current track in the queue, played tracks are kept while the queue is looped
+     */
+    public synchronized int getCurrentIndex() {
+        return queue.getCursor();
+    }
+
+    /**
+     * @return the player of the current track, it changes with every gapless track change
+     */
     public AudioPlayer getPlayer() {
         return player;
     }
 
+    public synchronized LoopMode getLoopMode(){
+        return loopMode;
+    }
+
+    public synchronized void setLoopMode(LoopMode loopMode){
+        this.loopMode = loopMode;
+        changes++;
+    }
+
     public void repeatQueue(boolean repeat){
-        this.repeat = repeat;
-        this.repeatCurrent = false;
+        setLoopMode(repeat ? LoopMode.QUEUE : LoopMode.OFF);
     }
 
     public void repeatCurrentTrack(boolean repeat){
-        this.repeatCurrent = repeat;
-        this.repeat = false;
+        setLoopMode(repeat ? LoopMode.TRACK : LoopMode.OFF);
     }
 
-    public void shuffleQueue(){
-        List<AudioInfo> _queue = new ArrayList<>(getQueue());
-        AudioInfo current = _queue.get(0);
-        _queue.remove(current);
-        Collections.shuffle(_queue);
-        _queue.add(0, current);
-        purgeQueue();
-        queue.addAll(_queue);
+    public synchronized void shuffleQueue(){
+        queue.shuffle(random);
+        changes++;
+    }
+
+    /**
+     * Moves an upcoming track, positions are counted from 1 = next track.
+     */
+    public synchronized boolean moveTrack(int from, int to){
+        changes++;
+        return queue.move(from, to);
+    }
+
+    /**
+     * Removes the upcoming tracks from position from (inclusive) to position to (exclusive), 1 = next track.
+     *
+     * @return the amount of removed tracks
+     */
+    public synchronized int removeTracks(int from, int to){
+        changes++;
+        return queue.removeUpcoming(from, to);
     }
 
     public void queue(AudioTrack track, MessageReceivedEvent event){
-        AudioInfo info = new AudioInfo(track, event);
-        queue.add(info);
+        queue(track, event, embed -> ChannelNotifier.notify(event.getTextChannel(), embed));
+    }
 
-        event.getTextChannel().sendMessage(queuedMessage(track, event)).queue();
+    /**
+     * @param reply receives the "queued" message, e.g. to edit it into a message that was sent before
+     */
+    public void queue(AudioTrack track, MessageReceivedEvent event, Consumer<MessageEmbed> reply){
+        int position;
+        synchronized (this) {
+            queue.add(new AudioInfo(track, event));
+            changes++;
+            position = queue.upcoming() + (playing != null ? 1 : 0);
+        }
 
-        if (player.getPlayingTrack() == null) {
-            current = queue.poll();
-            player.playTrack(current.getTrack());
+        reply.accept(queuedMessage(track, event, position));
+
+        startIfIdle();
+    }
+
+    // queues an entry without announcing it, used by the tests and benchmarks
+    void queue(AudioInfo info){
+        synchronized (this) {
+            queue.add(info);
+            changes++;
         }
+        startIfIdle();
+    }
+
+    /**
+     * Queues the tracks in the given order and replies with one message listing them.
+     */
+    public void queueTracks(List<AudioTrack> tracks, String query, MessageReceivedEvent event, Consumer<MessageEmbed> reply){
+        List<AudioInfo> infos = new ArrayList<>(tracks.size());
+        for (AudioTrack track : tracks)
+            infos.add(new AudioInfo(track, event));
+
+        int position;
+        synchronized (this) {
+            position = queue.upcoming() + (playing != null ? 2 : 1);
+            queue.addAll(infos);
+            changes++;
+        }
+
+        reply.accept(queuedTracksMessage(tracks, query, event, position));
+
+        startIfIdle();
     }
 
     public void queuePlaylist(AudioPlaylist playlist, MessageReceivedEvent event){
+        queuePlaylist(playlist, event, embed -> ChannelNotifier.notify(event.getTextChannel(), embed));
+    }
+
+    public void queuePlaylist(AudioPlaylist playlist, MessageReceivedEvent event, Consumer<MessageEmbed> reply){
         List<AudioTrack> tracks = playlist.getTracks();
-        int tracksLength = (tracks.size() <= Static.Audio.PLAYLIST_LIMIT ? tracks.size() : Static.Audio.PLAYLIST_LIMIT);
-        for (int i = 0; i < tracksLength; i++){
-            AudioInfo info = new AudioInfo(tracks.get(i), event);
-            queue.add(info);
+        int limit = new ServerFile(event.getGuild()).getPlaylistLimit();
+        int tracksLength = Math.min(tracks.size(), limit);
+
+        // only the first tracks stay decoded, the rest is kept encoded until it comes close to being played
+        List<AudioInfo> infos = new ArrayList<>(tracksLength);
+        for (int i = 0; i < tracksLength; i++) {
+            AudioInfo info = i > Static.Audio.PRELOAD_AHEAD ? AudioInfo.encoded(manager, tracks.get(i), event) : null;
+            infos.add(info != null ? info : new AudioInfo(tracks.get(i), event));
+        }
+
+        int position;
+        synchronized (this) {
+            position = queue.upcoming() + (playing != null ? 2 : 1);
+            queue.addAll(infos);
+            changes++;
+        }
+
+        reply.accept(queuedPlaylistMessage(playlist, tracksLength, event, position));
+
+        startIfIdle();
+    }
+
+    // starts the next track if nothing is playing or about to be played
+    private void startIfIdle(){
+        synchronized (this) {
+            if (playing != null)
+                return;
+            actions.add(play(queue.getCursor() < 0 ? queue.advance(false) : queue.current()));
+        }
+        runActions();
+    }
+
+    /**
+     * Runs the queued player calls outside of the lock. If another thread is running them already it picks up the
+     * new ones as well, nobody waits here - a playback thread calling in from onTrackEnd must never block.
+     */
+    private void runActions(){
+        synchronized (this) {
+            if (runningActions)
+                return;
+            runningActions = true;
+        }
+
+        while (true) {
+            Runnable action;
+            synchronized (this) {
+                action = actions.poll();
+                if (action == null) {
+                    runningActions = false;
+                    return;
+                }
+            }
+
+            try {
+                action.run();
+            } catch (RuntimeException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // must be called with the lock held, returns what has to be done with the players outside of the lock
+    private Runnable play(AudioInfo info){
+        changes++;
+        while (info != null && !info.materialize(manager))
+            info = queue.removeCurrent(loopMode == LoopMode.QUEUE); // the encoded track is broken, drop it
+        decodeAhead();
+
+        AudioPlayer previous = player;
+        AudioTrack buffered = preloaded;
+        if (info != null && info == preloadedInfo) {
+            // the next track is already buffering on the standby player, swap the players instead of loading it
+            preloaded = null;
+            preloadedInfo = null;
+            player = standby;
+            standby = previous;
+            playing = buffered;
+
+            AudioPlayer next = player;
+            AudioInfo started = info;
+            return () -> {
+                next.setPaused(previous.isPaused());
+                previous.stopTrack(); // does nothing if the track ended by itself
+                announce(started);
+                schedulePreload(buffered);
+            };
         }
 
-        event.getTextChannel().sendMessage(queuedPlaylistMessage(tracksLength, playlist, event)).queue();
+        Runnable drop = dropPreload();
+        playing = info != null ? info.getTrack().makeClone() : null;
+        AudioTrack next = playing;
+        return () -> {
+            drop.run();
+            previous.startTrack(next, false); // null stops the player
+        };
+    }
 
-        if (player.getPlayingTrack() == null) {
-            current = queue.poll();
+    // must be called with the lock held, returns the action that stops the buffered track outside of the lock
+    private Runnable dropPreload(){
+        AudioPlayer idle = standby;
+        AudioTrack buffered = preloaded;
+        preloaded = null;
+        preloadedInfo = null;
+        return () -> {
+            if (buffered != null && idle.getPlayingTrack() == buffered)
+                idle.stopTrack();
+        };
+    }
 
-            player.playTrack(current.getTrack());
+    // the entry that follows the current one in the current loop mode, must be called with the lock held
+    private AudioInfo peekNext(){
+        int cursor = queue.getCursor();
+        switch (loopMode) {
+            case TRACK:
+                return queue.current();
+            case QUEUE:
+                return queue.size() > 0 ? queue.get((cursor + 1) % queue.size()) : null;
+            default:
+                return queue.get(cursor + 1);
         }
+    }
+
+    private void schedulePreload(AudioTrack track){
+        if (track.getInfo().isStream)
+            return;
+        long delay = track.getDuration() - track.getPosition() - Static.Audio.PRELOAD_TIME;
+        preloader.schedule(() -> preloadNext(track), Math.max(delay, 0), TimeUnit.MILLISECONDS);
+    }
+
+    // starts the next track on the standby player once the current one is close to its end
+    private void preloadNext(AudioTrack track){
+        synchronized (this) {
+            if (playing != track || preloaded != null)
+                return;
+
+            // the track was paused or seeked since the preload was scheduled
+            if (track.getDuration() - track.getPosition() > Static.Audio.PRELOAD_TIME + 1000) {
+                schedulePreload(track);
+                return;
+            }
+
+            AudioInfo info = peekNext();
+            if (info == null || !info.materialize(manager))
+                return;
+
+            preloadedInfo = info;
+            preloaded = info.getTrack().makeClone();
+            AudioTrack next = preloaded;
+            AudioPlayer idle = standby;
+            actions.add(() -> idle.startTrack(next, false));
+        }
+        runActions();
+    }
+
+    // decodes the tracks of the preload window and releases the ones that left it, must be called with the lock held
+    private void decodeAhead(){
+        List<AudioInfo> window = new ArrayList<>(Static.Audio.PRELOAD_AHEAD + 1);
+        int cursor = queue.getCursor();
+        int size = queue.size();
+        for (int i = 0; cursor >= 0 && i <= Static.Audio.PRELOAD_AHEAD && i < size; i++) {
+            int index = cursor + i;
+            if (index >= size) {
+                if (loopMode != LoopMode.QUEUE)
+                    break;
+                index -= size;
+            }
+            window.add(queue.get(index));
+        }
+
+        for (AudioInfo info : materialized)
+            if (!window.contains(info))
+                info.release();
+        materialized.clear();
 
+        for (AudioInfo info : window)
+            if (info.materialize(manager))
+                materialized.add(info);
     }
 
+    /**
+     * Skips to the next track, the loop mode of the queue is kept but a looped track is left.
+     *
+     * @param keepInPlaylist append the skipped track to the end of the queue
+     */
     public boolean nextTrack(boolean keepInPlaylist){
-        if (!queue.isEmpty()) {
-            if (keepInPlaylist)
+        return jump(1, keepInPlaylist);
+    }
+
+    /**
+     * Skips to the track at the given offset, 1 = next track. When the queue is looped this is a cursor move only.
+     *
+     * @param keepInPlaylist append the skipped track to the end of the queue
+     */
+    public boolean jump(int offset, boolean keepInPlaylist){
+        boolean started;
+        synchronized (this) {
+            AudioInfo current = queue.current();
+            if (keepInPlaylist && current != null && loopMode != LoopMode.QUEUE)
                 queue.add(current);
 
-            current = queue.poll();
-            player.startTrack(current.getTrack(), false);
-            return true;
-        } else {
-            stop();
-            return false;
+            actions.add(play(queue.jump(offset, loopMode == LoopMode.QUEUE)));
+            started = playing != null;
         }
+
+        runActions();
+        return started;
     }
 
     public void stop(){
-        player.stopTrack();
+        synchronized (this) {
+            playing = null;
+            changes++;
+            AudioPlayer active = player;
+            Runnable drop = dropPreload();
+            actions.add(() -> {
+                active.stopTrack();
+                drop.run();
+            });
+        }
+        runActions();
     }
 
     public void purgeQueue(){
-        queue.clear();
+        synchronized (this) {
+            queue.clear();
+            materialized.clear();
+            changes++;
+            actions.add(dropPreload());
+        }
+        runActions();
+    }
+
+    /**
+     * Drops the queue and destroys both players, the scheduler can not be used afterwards.
+     */
+    public void destroy(){
+        purgeQueue();
+        synchronized (this) {
+            playing = null;
+            AudioPlayer active = player;
+            AudioPlayer idle = standby;
+            actions.add(() -> {
+                active.destroy();
+                idle.destroy();
+            });
+        }
+        runActions();
     }
 
     public boolean pause(){
@@ -139,53 +480,162 @@ public class TrackScheduler extends AudioEventAdapter {
         return false;
     }
 
+    public int getVolume(){
+        return player.getVolume();
+    }
+
+    /**
+     * @return the position of the current track in milliseconds, 0 if nothing is playing
+     */
+    public long getPosition(){
+        AudioTrack track = player.getPlayingTrack();
+        return track != null ? track.getPosition() : 0;
+    }
+
+    synchronized long getChanges(){
+        return changes;
+    }
+
+    /**
+     * Takes a snapshot of at most limit entries. Played entries are only kept while the queue is looped, if the
+     * current entry is not within the limit the snapshot starts with it.
+     */
+    synchronized QueueSnapshot snapshot(int limit){
+        int cursor = queue.getCursor();
+        int start = loopMode == LoopMode.QUEUE || cursor < 0 ? 0 : cursor;
+        if (cursor - start >= limit)
+            start = cursor;
+
+        int end = Math.min(queue.size(), start + limit);
+        List<AudioInfo> entries = new ArrayList<>(Math.max(end - start, 0));
+        for (int i = start; i < end; i++)
+            entries.add(queue.get(i));
+        return new QueueSnapshot(changes, loopMode, cursor < 0 ? -1 : cursor - start, entries);
+    }
+
+    /**
+     * Replaces the queue with a snapshot and continues its current track at the saved position.
+     */
+    void restore(QueueSnapshot snapshot){
+        synchronized (this) {
+            queue.clear();
+            materialized.clear();
+            queue.addAll(snapshot.entries);
+            loopMode = snapshot.loopMode;
+
+            if (snapshot.cursor >= 0)
+                queue.jump(snapshot.cursor + 1, true);
+            actions.add(play(queue.getCursor() < 0 ? queue.advance(false) : queue.current()));
+
+            // tracks that were not started yet begin at their position
+            if (playing != null && snapshot.cursor >= 0 && snapshot.position > 0 && playing.isSeekable())
+                playing.setPosition(snapshot.position);
+        }
+
+        setVolume(snapshot.volume);
+        runActions();
+    }
+
     public void setVolume(int volume){
+        AudioPlayer idle;
+        synchronized (this) {
+            idle = standby;
+        }
         player.setVolume(volume);
+        idle.setVolume(volume);
     }
 
     public boolean isPlaying(boolean ignorePause){
         return player.getPlayingTrack() != null && (!player.isPaused() || ignorePause);
     }
 
-    public AudioInfo getCurrentTrack() {
-        return current;
+    public synchronized AudioInfo getCurrentTrack() {
+        return playing != null ? queue.current() : null;
+    }
+
+    // the info of the track if it is still the current one, null if it was replaced in the meantime
+    private synchronized AudioInfo currentOf(AudioTrack track){
+        return playing == track ? queue.current() : null;
     }
 
     @Override
     public void onTrackStart(AudioPlayer player, AudioTrack track) {
-        current.getEvent().getTextChannel().sendMessage(onTrackStartMessage()).queue();
+        AudioInfo info = currentOf(track);
+        if (info == null)
+            return; // replaced in the meantime, or a preload on the standby player, which is announced when it plays
+
+        announce(info);
+        schedulePreload(track);
+    }
+
+    private void announce(AudioInfo info){
+        TextChannel channel = info.getTextChannel();
+        if (channel != null)
+            ChannelNotifier.notify(channel, onTrackStartMessage(info));
     }
 
     @Override
     public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
-        if (endReason.mayStartNext) {
-            Guild g = current.getEvent().getGuild();
-
-            if (queue.isEmpty())
-                new TrackEndThread(g).start();
-            else {
-                current = queue.poll();
-                player.playTrack(current.getTrack());
+        AudioInfo ended;
+        boolean finished;
+        synchronized (this) {
+            if (track == preloaded) {
+                // the preload failed or was stopped, the track is loaded the usual way when it is due
+                preloaded = null;
+                preloadedInfo = null;
+                return;
             }
+
+            if (!endReason.mayStartNext || playing != track)
+                return; // a command already started another track
+
+            ended = queue.current();
+            if (ended == null) {
+                playing = null; // the queue was purged while the track was playing
+                return;
+            }
+
+            if (endReason == AudioTrackEndReason.LOAD_FAILED)
+                actions.add(play(queue.removeCurrent(loopMode == LoopMode.QUEUE))); // never retry a broken track
+            else if (loopMode == LoopMode.TRACK)
+                actions.add(play(ended));
+            else
+                actions.add(play(queue.advance(loopMode == LoopMode.QUEUE)));
+            finished = playing == null;
         }
+
+        runActions();
+
+        Guild guild = ended.getGuild();
+        if (finished && guild != null)
+            new TrackEndThread(guild).start();
+    }
+
+    private MessageEmbed queuedMessage(AudioTrack track, MessageReceivedEvent event, int position){
+        return Message.INFO(event, "**Queued:** ***" + track.getInfo().title + "*** in Position **#" + position + "**").build();
     }
 
-    private MessageEmbed queuedMessage(AudioTrack track, MessageReceivedEvent event){
-        return Message.INFO(event, "**Queued:** ***" + track.getInfo().title + "*** in Position **#" + (queue.size() + ( player.getPlayingTrack() != null ?  1 : 0)) + "**").build();
+    private MessageEmbed queuedPlaylistMessage(AudioPlaylist playlist, int count, MessageReceivedEvent event, int position){
+        return Message.INFO(event, "**Queued:** " + count + " Videos of ***" + playlist.getName() + "*** in Position **#" + position + "**").build();
     }
 
-    private MessageEmbed queuedPlaylistMessage(int tracksLength, AudioPlaylist playlist, MessageReceivedEvent event){
-        return Message.INFO(event, "**Queued:** Videos of ***" + playlist.getName() + "*** in Position **#" + (queue.size() - tracksLength + ( player.getPlayingTrack() != null ?  2 : 1)) + "**").build();
+    private MessageEmbed queuedTracksMessage(List<AudioTrack> tracks, String query, MessageReceivedEvent event, int position){
+        StringBuilder text = new StringBuilder("**Queued:** " + tracks.size() + " Videos for ***" + query + "***\n");
+        for (AudioTrack track : tracks)
+            text.append("\n**#").append(position++).append("** ").append(track.getInfo().title)
+                    .append(" [").append(getTimestamp(track.getInfo().length)).append("]");
+        return Message.INFO(event, text.toString()).build();
     }
 
-    private MessageEmbed onTrackStartMessage(){
-        AudioTrack track = current.getTrack();
-        MessageReceivedEvent event = current.getEvent();
+    private MessageEmbed onTrackStartMessage(AudioInfo info){
+        AudioTrack track = info.getTrack();
+        Member requester = info.getRequester();
 
         String trackUrl = (Tools.isUrl(track.getIdentifier()) ? track.getIdentifier() : "https://youtube.com/watch?v=" + track.getIdentifier() );
 
-        EmbedBuilder builder = Message.INFO(event, "**Now playing:** ***[" + track.getInfo().title + "](" + trackUrl +")*** by *" + track.getInfo().author + "*\n"
-                + " [" + getTimestamp(track.getInfo().length) + "]");
+        String text = "**Now playing:** ***[" + track.getInfo().title + "](" + trackUrl +")*** by *" + track.getInfo().author + "*\n"
+                + " [" + getTimestamp(track.getInfo().length) + "]";
+        EmbedBuilder builder = requester != null ? Message.INFO(requester, text) : Message.INFO_RAW(text);
 
         return builder.build();
     }
@@ -28,82 +28,213 @@ import com.google.api.services.youtube.YouTubeScopes;
 import com.google.api.services.youtube.model.*;
 import com.google.api.services.youtube.YouTube;
 import commands.chat.commands.testing.Ping;
+import core.tools.Futures;
+import core.tools.LatencyHistogram;
+import core.tools.TimedCache;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import utils.Secret;
+import utils.Static;
 
 import java.io.*;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static utils.Static.PREFIX;
 
 
+/**
+ * YouTube Data API searches. One client is shared by all searches: the transport is created once (loading the trust
+ * store is expensive) and the jdk keeps the connections to the API alive between requests.
+ *
+ * Results are cached by search type, amount and normalized query (trimmed, lower case, single spaces), an empty
+ * result list marks a search without results. Identical searches running at the same time share one API call.
+ *
+ * The API calls run on a small I/O pool, the async methods never block the calling thread. The blocking methods wait
+ * for the same futures.
+ */
 public class YouTubeAPI {
 
-
-    public static YouTube getYouTube() throws Exception{
-
-        return new YouTube.Builder(GoogleNetHttpTransport.newTrustedTransport(), JacksonFactory.getDefaultInstance(), new HttpRequestInitializer() {
+    private static final HttpTransport transport;
+    private static final YouTube youtube;
+
+    // latency of the API calls per search type
+    private static final LatencyHistogram videoLatency = new LatencyHistogram();
+    private static final LatencyHistogram videosLatency = new LatencyHistogram();
+    private static final LatencyHistogram playlistLatency = new LatencyHistogram();
+
+    private static final TimedCache<String, List<SearchResult>> cache = new TimedCache<>(Static.YouTube.SEARCH_CACHE_SIZE, Static.YouTube.SEARCH_CACHE_TTL);
+    private static final ConcurrentMap<String, CompletableFuture<List<SearchResult>>> running = new ConcurrentHashMap<>();
+    private static final AtomicLong collapsed = new AtomicLong();
+
+    private static final AtomicInteger threads = new AtomicInteger();
+    private static final ExecutorService io = Executors.newFixedThreadPool(Static.YouTube.IO_THREADS, r -> {
+        Thread thread = new Thread(r, "YouTube-IO-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // only read when the jdk keeps its first connection alive, so it is set before the transport is built
+        if (System.getProperty("http.maxConnections") == null)
+            System.setProperty("http.maxConnections", String.valueOf(Static.YouTube.MAX_CONNECTIONS));
+
+        try {
+            transport = GoogleNetHttpTransport.newTrustedTransport();
+        } catch (Exception e){
+            throw new ExceptionInInitializerError(e);
+        }
+
+        youtube = new YouTube.Builder(transport, JacksonFactory.getDefaultInstance(), new HttpRequestInitializer() {
             public void initialize(HttpRequest request) throws IOException {
+                request.setConnectTimeout(Static.YouTube.CONNECT_TIMEOUT);
+                request.setReadTimeout(Static.YouTube.READ_TIMEOUT);
             }
-        }).setApplicationName("magnetbot-discord").build();
+        }).setRootUrl(Static.YouTube.ROOT_URL).setApplicationName("magnetbot-discord").build();
+    }
 
+    public static YouTube getYouTube() {
+        return youtube;
     }
 
-    public static List<SearchResult> searchVideos(String queryTerm, long returnNumber) throws Exception{
+    /**
+     * @return the latency histograms by search type
+     */
+    public static Map<String, LatencyHistogram> getLatencies() {
+        Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+        latencies.put("video", videoLatency);
+        latencies.put("videos", videosLatency);
+        latencies.put("playlist", playlistLatency);
+        return latencies;
+    }
 
-        YouTube.Search.List search = getYouTube().search().list("id,snippet");
-        search.setKey(Secret.YOUTUBE_APIKEY);
-        search.setQ(queryTerm);
+    public static TimedCache<String, List<SearchResult>> getCache() {
+        return cache;
+    }
 
-        search.setType("video");
+    /**
+     * @return the quota units saved by cache hits and by searches that joined a running identical one
+     */
+    public static long getQuotaSaved() {
+        return (cache.getHits() + collapsed.get()) * Static.YouTube.SEARCH_QUOTA_COST;
+    }
 
-        search.setFields("items(id/kind,id/videoId,snippet/title,snippet/thumbnails/default/url)");
-        search.setMaxResults(returnNumber);
+    private static String normalize(String queryTerm) {
+        return queryTerm.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
 
-        SearchListResponse searchResponse = search.execute();
-        if (searchResponse.getItems().size() == 0)
-            throw new YouTubeAPI.NoResultException();
-        return searchResponse.getItems();
+    public static List<SearchResult> searchVideos(String queryTerm, long returnNumber) throws Exception{
+        return await(searchVideosAsync(queryTerm, returnNumber));
     }
 
     public static SearchResult searchVideo(String queryTerm) throws Exception {
+        return await(searchVideoAsync(queryTerm));
+    }
 
-        YouTube.Search.List search = getYouTube().search().list("id,snippet");
-        search.setKey(Secret.YOUTUBE_APIKEY);
-        search.setQ(queryTerm);
+    public static SearchResult searchPlaylist(String queryTerm) throws Exception {
+        return await(searchPlaylistAsync(queryTerm));
+    }
 
-        search.setType("video");
+    /**
+     * @return the results, completed with a NoResultException if nothing was found
+     */
+    public static CompletableFuture<List<SearchResult>> searchVideosAsync(String queryTerm, long returnNumber) {
+        return search(queryTerm, "video", "items(id/kind,id/videoId,snippet/title,snippet/thumbnails/default/url)", returnNumber, videosLatency)
+                .thenApply(YouTubeAPI::nonEmpty);
+    }
 
-        search.setFields("items(id/kind,id/videoId,snippet/title,snippet/thumbnails/default/url)");
-        search.setMaxResults(1L);
+    public static CompletableFuture<SearchResult> searchVideoAsync(String queryTerm) {
+        return search(queryTerm, "video", "items(id/kind,id/videoId,snippet/title,snippet/thumbnails/default/url)", 1L, videoLatency)
+                .thenApply(results -> nonEmpty(results).get(0));
+    }
 
-        SearchListResponse searchResponse = search.execute();
-        if (searchResponse.getItems().size() == 0)
-            throw new YouTubeAPI.NoResultException();
-        return searchResponse.getItems().get(0);
+    public static CompletableFuture<SearchResult> searchPlaylistAsync(String queryTerm) {
+        return search(queryTerm, "playlist", "items(id/kind,id/playlistId,snippet/title,snippet/thumbnails/default/url)", 1L, playlistLatency)
+                .thenApply(results -> nonEmpty(results).get(0));
     }
 
-    public static SearchResult searchPlaylist(String queryTerm) throws Exception {
-        YouTube.Search.List search = getYouTube().search().list("id,snippet");
+    private static List<SearchResult> nonEmpty(List<SearchResult> results) {
+        if (results.isEmpty())
+            throw new CompletionException(new YouTubeAPI.NoResultException());
+        return results;
+    }
+
+    // the returned future may be shared with identical searches, callers only get dependent futures of it
+    private static CompletableFuture<List<SearchResult>> search(String queryTerm, String type, String fields, long returnNumber, LatencyHistogram latency) {
+        String key = type + ":" + returnNumber + ":" + normalize(queryTerm);
+
+        List<SearchResult> results = cache.get(key);
+        if (results != null)
+            return CompletableFuture.completedFuture(results);
+
+        CompletableFuture<List<SearchResult>> request = new CompletableFuture<>();
+        CompletableFuture<List<SearchResult>> other = running.putIfAbsent(key, request);
+        if (other != null) {
+            collapsed.incrementAndGet();
+            return other;
+        }
+
+        io.execute(() -> {
+            try {
+                List<SearchResult> found = Collections.unmodifiableList(execute(queryTerm, type, fields, returnNumber, latency));
+                cache.put(key, found, found.isEmpty() ? Static.YouTube.NO_RESULT_TTL : Static.YouTube.SEARCH_CACHE_TTL);
+                request.complete(found);
+            } catch (Exception e){
+                request.completeExceptionally(e);
+            } finally {
+                running.remove(key, request);
+            }
+        });
+        return request;
+    }
+
+    private static <T> T await(CompletableFuture<T> request) throws Exception {
+        try {
+            return request.get();
+        } catch (ExecutionException e){
+            Throwable cause = Futures.unwrap(e);
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    private static List<SearchResult> execute(String queryTerm, String type, String fields, long returnNumber, LatencyHistogram latency) throws Exception {
+        YouTube.Search.List search = youtube.search().list("id,snippet");
         search.setKey(Secret.YOUTUBE_APIKEY);
         search.setQ(queryTerm);
 
-        search.setType("playlist");
+        search.setType(type);
+
+        search.setFields(fields);
+        search.setMaxResults(returnNumber);
 
-        search.setFields("items(id/kind,id/playlistId,snippet/title,snippet/thumbnails/default/url)");
-        search.setMaxResults(1L);
+        long start = System.nanoTime();
+        SearchListResponse searchResponse;
+        try {
+            searchResponse = search.execute();
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
 
-        SearchListResponse searchResponse = search.execute();
-        if (searchResponse.getItems().size() == 0)
-            throw new YouTubeAPI.NoResultException();
-        return searchResponse.getItems().get(0);
+        return searchResponse.getItems() != null ? searchResponse.getItems() : Collections.emptyList();
     }
 
     public static class NoResultException extends Exception { }
 
-}
\ No newline at end of file
+}
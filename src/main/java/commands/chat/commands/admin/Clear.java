@@ -14,8 +14,8 @@ import java.util.List;
 
 public class Clear implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("clear");
+    public String[] aliases() {
+        return new String[]{"clear"};
     }
 
     @Override
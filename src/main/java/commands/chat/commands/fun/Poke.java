@@ -14,8 +14,8 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public class Poke implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("poke");
+    public String[] aliases() {
+        return new String[]{"poke"};
     }
 
     @Override
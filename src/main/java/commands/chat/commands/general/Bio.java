@@ -12,8 +12,8 @@ import utils.UserSQL;
 
 public class Bio implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("bio");
+    public String[] aliases() {
+        return new String[]{"bio"};
     }
 
     @Override
@@ -16,8 +16,8 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public class Help implements ChatCommand{
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("help") || cmd.equals("?");
+    public String[] aliases() {
+        return new String[]{"help", "?"};
     }
 
     @Override
@@ -46,18 +46,22 @@ public class Help implements ChatCommand{
                 .addField("MUSIC",
                         commandDesc("connect", "connects this bot to with a voicechannel", 3) +
                                 commandDesc("info", "shows info about the playing track", 0) +
+                                commandDesc("loop", "loops the current track or the whole queue", 0) +
                                 commandDesc("pause", "pauses the media playback", 0) +
                                 commandDesc("play", "play a track from an URL or youtube", 0) +
+                                commandDesc("playtop", "queues the top results of a youtube search", 0) +
                                 commandDesc("playlist", "play a playlist from an URL or youtube", 0) +
+                                commandDesc("playlistlimit", "shows or changes the maximum amount of tracks queued from a playlist", 1) +
                                 commandDesc("resume", "resumes the media playback", 0) +
-                                commandDesc("skip", "skips the current track", 0) +
+                                commandDesc("skip", "skips the current track or to a position in the queue", 0) +
                                 commandDesc("stop", "stops the media playback", 1) +
                                 commandDesc("volume", "changes the volume of the media playback", 0)
                         , true)
 
                 .addField("TESTING",
                         commandDesc("error", "shows a custom error message", 0) +
-                                commandDesc("ping", "gives you the connection ping from the bot to discord", 0)
+                                commandDesc("ping", "gives you the connection ping from the bot to discord", 0) +
+                                commandDesc("stats", "shows cache and command queue statistics", 3)
                         , true)
 
         ;
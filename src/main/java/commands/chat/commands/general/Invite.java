@@ -11,8 +11,8 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public class Invite implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("invite");
+    public String[] aliases() {
+        return new String[]{"invite"};
     }
 
     @Override
@@ -12,23 +12,22 @@ import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.MessageEmbed;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import utils.UserRecord;
 import utils.UserSQL;
 
 import java.sql.SQLException;
 
 public class Profile implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("profile");
+    public String[] aliases() {
+        return new String[]{"profile"};
     }
 
     @Override
-    public void action(MessageReceivedEvent event, String full, String cmd, String[] args) {
+    public void action(MessageReceivedEvent event, String full, String cmd, String[] args) throws SQLException {
         Member m = AutoComplete.member(event.getGuild().getMembers(), args[0]);
         if (m == null)
             m = event.getMember();
-        if (!UserSQL.userExists(m.getUser().getId()))
-            UserSQL.createUser(m.getUser().getId());
 
         event.getTextChannel().sendMessage(profile(event, args, m)).queue();
     }
@@ -38,14 +37,15 @@ public class Profile implements ChatCommand {
         return null;
     }
 
-    private MessageEmbed profile(MessageReceivedEvent event, String[] args, Member m){
+    private MessageEmbed profile(MessageReceivedEvent event, String[] args, Member m) throws SQLException {
 
+        UserRecord user = UserSQL.getUser(m.getUser().getId());
 
         EmbedBuilder builder = Message.INFO(event);
             builder.setAuthor(m.getEffectiveName() + (!m.getEffectiveName().endsWith("s") ? "'s " : "") + " profile", "https://magnet.strukteon.me/user?userid=" + m.getUser().getId(), m.getUser().getEffectiveAvatarUrl());
 
-            builder.addField(":label: Bio", "``" + UserSQL.getBio(m.getUser().getId()) + "``", false)
-                    .addField(":moneybag: Lodestones", "" + UserSQL.getMoney(m.getUser().getId()), true);
+            builder.addField(":label: Bio", "``" + user.getBio() + "``", false)
+                    .addField(":moneybag: Lodestones", "" + user.getMoney(), true);
 
         return builder.build();
     }
@@ -17,8 +17,8 @@ import java.time.format.DateTimeFormatter;
 
 public class Server implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("server");
+    public String[] aliases() {
+        return new String[]{"server"};
     }
 
     @Override
@@ -12,8 +12,8 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public class WhoAmI implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("whoami");
+    public String[] aliases() {
+        return new String[]{"whoami"};
     }
 
     @Override
@@ -15,8 +15,8 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public class WhoIs implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("whois");
+    public String[] aliases() {
+        return new String[]{"whois"};
     }
 
     @Override
@@ -14,8 +14,8 @@ public class Slots implements ChatCommand {
     private String[] slots = {":grapes:", ":watermelon:", ":cherries:", ":crown:", ":100:", ":four_leaf_clover:", ":bell:", ":strawberry:", ":gem:" };
 
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("slots");
+    public String[] aliases() {
+        return new String[]{"slots"};
     }
 
     @Override
@@ -38,7 +38,6 @@ public class Slots implements ChatCommand {
     }
 
     private String genSlots(int[] result){
-        System.out.println(slots.length);
         String s = "";
         for (int i = 0; i < 3; i++){
             if (i != 0)
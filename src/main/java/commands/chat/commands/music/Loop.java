@@ -0,0 +1,54 @@
+package commands.chat.commands.music;
+/*
+    Created by nils on 14.02.2018 at 21:32.
+    
+    (c) nils 2018
+*/
+
+import audio.TrackScheduler;
+import commands.chat.core.ChatCommand;
+import commands.chat.tools.Message;
+import core.Main;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import utils.Static;
+
+public class Loop implements ChatCommand {
+    @Override
+    public String[] aliases() {
+        return new String[]{"loop", "repeat"};
+    }
+
+    @Override
+    public void action(MessageReceivedEvent event, String full, String cmd, String[] args) throws Exception {
+        TrackScheduler scheduler = Main.audioCore.getGuildAudioPlayer(event.getGuild()).scheduler;
+
+        TrackScheduler.LoopMode mode;
+        switch (args[0].toLowerCase()) {
+            case "off":
+                mode = TrackScheduler.LoopMode.OFF;
+                break;
+            case "track":
+                mode = TrackScheduler.LoopMode.TRACK;
+                break;
+            case "queue":
+                mode = TrackScheduler.LoopMode.QUEUE;
+                break;
+            default:
+                event.getTextChannel().sendMessage(Message.WRONG_SYNTAX(event, Static.PREFIX + "loop <off|track|queue>").build()).queue();
+                return;
+        }
+
+        scheduler.setLoopMode(mode);
+        event.getTextChannel().sendMessage(Message.INFO(event, "Loop mode set to **" + mode.name().toLowerCase() + "**").build()).queue();
+    }
+
+    @Override
+    public String premiumPermission() {
+        return null;
+    }
+
+    @Override
+    public int permissionLevel() {
+        return 0;
+    }
+}
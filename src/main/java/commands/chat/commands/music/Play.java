@@ -6,8 +6,6 @@ package commands.chat.commands.music;
 */
 
 import audio.AudioCore;
-import audio.youtube.YouTubeAPI;
-import com.google.api.services.youtube.model.SearchResult;
 import commands.chat.core.ChatCommand;
 import commands.chat.tools.Message;
 import core.Main;
@@ -20,8 +18,8 @@ import java.sql.Statement;
 
 public class Play implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("play");
+    public String[] aliases() {
+        return new String[]{"play"};
     }
 
     @Override
@@ -34,18 +32,10 @@ public class Play implements ChatCommand {
             if (event.getMember().getVoiceState().getChannel() == null)
                 event.getTextChannel().sendMessage(Message.ERROR(event, "You have to be connected to a VoiceChannel!").build()).queue();
             else
-                if (args[0].startsWith("http://") || args[0].startsWith("https://"))
+                if (Tools.isUrl(args[0]))
                     Main.audioCore.load(event, args[0]);
-                else {
-                    try {
-                        SearchResult video = YouTubeAPI.searchVideo(Tools.argsToString(args, " "));
-
-                        Main.audioCore.load(event, video.getId().getVideoId());
-                    } catch (YouTubeAPI.NoResultException e){
-                        event.getTextChannel().sendMessage(Message.ERROR(event, "No results found for: " + Tools.argsToString(args, " ")).build()).queue();
-                    }
-
-                }
+                else
+                    Main.audioCore.search(event, Tools.argsToString(args, " "), false);
 
         }
 
@@ -0,0 +1,43 @@
+package commands.chat.commands.music;
+/*
+    Created by nils on 18.02.2018 at 16:45.
+    
+    (c) nils 2018
+*/
+
+import commands.chat.core.ChatCommand;
+import commands.chat.tools.Message;
+import core.Main;
+import core.tools.Tools;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import utils.Static;
+
+import java.util.Arrays;
+
+public class PlayTop implements ChatCommand {
+    @Override
+    public String[] aliases() {
+        return new String[]{"playtop"};
+    }
+
+    @Override
+    public void action(MessageReceivedEvent event, String full, String cmd, String[] args) throws Exception {
+        int count = Tools.parseInt(args[0], 0);
+        if (args.length < 2 || count < 1 || count > Static.YouTube.MAX_SEARCH_RESULTS)
+            event.getTextChannel().sendMessage(Message.WRONG_SYNTAX(event, Static.PREFIX + "playtop <1-" + Static.YouTube.MAX_SEARCH_RESULTS + "> <youtubequery>").build()).queue();
+        else if (event.getMember().getVoiceState().getChannel() == null)
+            event.getTextChannel().sendMessage(Message.ERROR(event, "You have to be connected to a VoiceChannel!").build()).queue();
+        else
+            Main.audioCore.searchTop(event, Tools.argsToString(Arrays.copyOfRange(args, 1, args.length), " "), count);
+    }
+
+    @Override
+    public String premiumPermission() {
+        return null;
+    }
+
+    @Override
+    public int permissionLevel() {
+        return 0;
+    }
+}
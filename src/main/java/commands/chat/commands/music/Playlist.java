@@ -5,8 +5,6 @@ package commands.chat.commands.music;
     (c) nils 2018
 */
 
-import audio.youtube.YouTubeAPI;
-import com.google.api.services.youtube.model.SearchResult;
 import commands.chat.core.ChatCommand;
 import commands.chat.tools.Message;
 import core.Main;
@@ -16,8 +14,8 @@ import utils.Static;
 
 public class Playlist implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("playlist");
+    public String[] aliases() {
+        return new String[]{"playlist"};
     }
 
     @Override
@@ -29,18 +27,10 @@ public class Playlist implements ChatCommand {
             if (event.getMember().getVoiceState().getChannel() == null)
                 event.getTextChannel().sendMessage(Message.ERROR(event, "You have to be connected to a VoiceChannel!").build()).queue();
             else
-            if (args[0].startsWith("http://") || args[0].startsWith("https://"))
+            if (Tools.isUrl(args[0]))
                 Main.audioCore.load(event, args[0]);
-            else {
-                try {
-                    SearchResult playlist = YouTubeAPI.searchPlaylist(Tools.argsToString(args, " "));
-
-                    Main.audioCore.load(event, playlist.getId().getPlaylistId());
-                } catch (YouTubeAPI.NoResultException e){
-                    event.getTextChannel().sendMessage(Message.ERROR(event, "No results found for: " + Tools.argsToString(args, " ")).build()).queue();
-                }
-
-            }
+            else
+                Main.audioCore.search(event, Tools.argsToString(args, " "), true);
 
         }
     }
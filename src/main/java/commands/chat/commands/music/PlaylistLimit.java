@@ -0,0 +1,44 @@
+package commands.chat.commands.music;
+/*
+    Created by nils on 15.02.2018 at 19:12.
+    
+    (c) nils 2018
+*/
+
+import commands.chat.core.ChatCommand;
+import commands.chat.tools.Message;
+import core.files.ServerFile;
+import core.tools.Tools;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import utils.Static;
+
+public class PlaylistLimit implements ChatCommand {
+    @Override
+    public String[] aliases() {
+        return new String[]{"playlistlimit"};
+    }
+
+    @Override
+    public void action(MessageReceivedEvent event, String full, String cmd, String[] args) throws Exception {
+        ServerFile file = new ServerFile(event.getGuild());
+
+        if (args.length == 1 && args[0].equals(""))
+            event.getTextChannel().sendMessage(Message.INFO(event, "Playlists are limited to **" + file.getPlaylistLimit() + "** tracks").build()).queue();
+        else if (Tools.parseInt(args[0], 0) < 1)
+            event.getTextChannel().sendMessage(Message.WRONG_SYNTAX(event, Static.PREFIX + "playlistlimit <1-" + Static.Audio.MAX_PLAYLIST_LIMIT + ">").build()).queue();
+        else {
+            file.setPlaylistLimit(Tools.parseInt(args[0], 0));
+            event.getTextChannel().sendMessage(Message.INFO(event, "Playlists are now limited to **" + file.getPlaylistLimit() + "** tracks").build()).queue();
+        }
+    }
+
+    @Override
+    public String premiumPermission() {
+        return null;
+    }
+
+    @Override
+    public int permissionLevel() {
+        return 1;
+    }
+}
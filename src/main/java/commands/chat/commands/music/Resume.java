@@ -12,8 +12,8 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public class Resume implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("resume");
+    public String[] aliases() {
+        return new String[]{"resume"};
     }
 
     @Override
@@ -7,17 +7,22 @@ package commands.chat.commands.music;
 
 import commands.chat.core.ChatCommand;
 import core.Main;
+import core.tools.Tools;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public class Skip implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("skip");
+    public String[] aliases() {
+        return new String[]{"skip"};
     }
 
     @Override
     public void action(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        Main.audioCore.skipTrack(event);
+        int position = Tools.parseInt(args[0], 0);
+        if (position > 1)
+            Main.audioCore.skipTrack(event, position - 1); // skip to the track queued at position #n
+        else
+            Main.audioCore.skipTrack(event);
     }
 
     @Override
@@ -13,8 +13,8 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public class Stop implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("stop");
+    public String[] aliases() {
+        return new String[]{"stop"};
     }
 
     @Override
@@ -12,8 +12,8 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public class Volume implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("volume");
+    public String[] aliases() {
+        return new String[]{"volume"};
     }
 
     @Override
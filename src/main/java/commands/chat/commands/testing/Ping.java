@@ -13,8 +13,8 @@ import java.awt.*;
 
 public class Ping implements ChatCommand {
     @Override
-    public boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args) {
-        return cmd.equals("ping");
+    public String[] aliases() {
+        return new String[]{"ping"};
     }
 
     @Override
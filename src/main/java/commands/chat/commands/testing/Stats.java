@@ -0,0 +1,53 @@
+package commands.chat.commands.testing;
+/*
+    Created by nils on 10.02.2018 at 17:40.
+    
+    (c) nils 2018
+*/
+
+import audio.youtube.YouTubeAPI;
+import commands.chat.core.ChatCommand;
+import commands.chat.core.ChatHandler;
+import commands.chat.tools.ChannelNotifier;
+import commands.chat.tools.Message;
+import core.Main;
+import net.dv8tion.jda.core.EmbedBuilder;
+import core.tools.LatencyHistogram;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import utils.UserSQL;
+
+import java.util.Map;
+
+public class Stats implements ChatCommand {
+    @Override
+    public String[] aliases() {
+        return new String[]{"stats"};
+    }
+
+    @Override
+    public void action(MessageReceivedEvent event, String full, String cmd, String[] args) {
+        EmbedBuilder builder = Message.INFO(event);
+
+        builder .setTitle("**Statistics**")
+                .addField("User cache", "``" + UserSQL.getCache().getStats() + "``", false)
+                .addField("Track cache", "``" + Main.audioCore.getTrackCache().getStats() + "``", false)
+                .addField("Waiting commands", "``" + ChatHandler.getExecutor().getPending() + "``", false)
+                .addField("Notifications", "``" + ChannelNotifier.getStats() + "``", false);
+
+        builder.addField("Search cache", "``" + YouTubeAPI.getCache().getStats() + ", quota saved: " + YouTubeAPI.getQuotaSaved() + " units``", false);
+        for (Map.Entry<String, LatencyHistogram> latency : YouTubeAPI.getLatencies().entrySet())
+            builder.addField("YouTube search (" + latency.getKey() + ")", "``" + latency.getValue().getStats() + "``", false);
+
+        event.getTextChannel().sendMessage(builder.build()).queue();
+    }
+
+    @Override
+    public String premiumPermission() {
+        return null;
+    }
+
+    @Override
+    public int permissionLevel() {
+        return 3;
+    }
+}
@@ -9,8 +9,9 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 public interface ChatCommand {
 
-    boolean execute(MessageReceivedEvent event, String full, String cmd, String[] args);
+    String[] aliases(); // every name the command answers to, lower case
 
+    // cmd is lower case, full and args keep the casing the user typed: compare them with equalsIgnoreCase
     void action(MessageReceivedEvent event, String full, String cmd, String[] args) throws Exception;
 
     String premiumPermission();
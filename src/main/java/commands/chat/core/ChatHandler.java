@@ -9,56 +9,83 @@ import commands.chat.tools.Message;
 import net.dv8tion.jda.core.Permission;
 import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.core.exceptions.InsufficientPermissionException;
+import utils.Static;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ChatHandler {
 
     public static List<ChatCommand> chatCommands = new ArrayList<>();
 
-    public static void handleInput(MessageReceivedEvent event, String full){
+    // alias -> command, filled once by addCommand() while the commands are imported
+    private static Map<String, ChatCommand> commandMap = new HashMap<>();
 
-        String cmd = full.split(" ")[0];
+    private static CommandExecutor executor = new CommandExecutor(Static.Commands.POOL_SIZE, Static.Commands.GUILD_QUEUE_LIMIT,
+            Static.Commands.QUEUE_LIMIT, Static.Commands.VIRTUAL_THREADS);
 
-        String[] args = full.replaceFirst(cmd + (full.split(" ").length > 1 ? " " : ""), "").split(" ");
+    public static void handleInput(MessageReceivedEvent event, ChatInput input){
 
-        testCommands(event, full, cmd, args);
+        testCommands(event, input.full, input.cmd, input.args);
 
     }
 
     public static void testCommands(MessageReceivedEvent event, String full, String cmd, String[] args){
 
-        for (ChatCommand command : chatCommands){
-
-            if (command.execute(event, full, cmd, args)){
-                if (Chat.permissionLevel(event) >= command.permissionLevel())
-                    try {
-
-                        command.action(event, full, cmd, args);
-
-                    } catch (InsufficientPermissionException e){
-                        Permission missing = e.getPermission();
-                        try {
-                            event.getTextChannel().sendMessage(
-                                    Message.ERROR(event, "Please give me the following Permission: ``" + missing.getName() + "``")
-                                            .build()).queue();
-                        } catch (InsufficientPermissionException error){ }
-                    } catch (Exception e){
-                        event.getTextChannel().sendMessage(Message.INTERNAL_ERROR(event, e).build()).queue();
-                        e.printStackTrace();
-                    }
-                else
+        ChatCommand command = getCommand(cmd);
+
+        if (command == null)
+            return;
+
+        long guildId = event.getGuild() != null ? event.getGuild().getIdLong() : event.getChannel().getIdLong();
+
+        if (!executor.submit(guildId, () -> runCommand(command, event, full, cmd, args)))
+            event.getTextChannel().sendMessage(
+                    Message.ERROR(event, "Too many commands are waiting to be executed, please try again in a few seconds").build()).queue();
+    }
+
+    private static void runCommand(ChatCommand command, MessageReceivedEvent event, String full, String cmd, String[] args){
+
+        if (Chat.permissionLevel(event) >= command.permissionLevel())
+            try {
+
+                command.action(event, full, cmd, args);
+
+            } catch (InsufficientPermissionException e){
+                Permission missing = e.getPermission();
+                try {
                     event.getTextChannel().sendMessage(
-                            Message.ERROR(event, "You do not have the required permissions to execute that command\n Needed Permission level: " +
-                                    Chat.permLevel(command.permissionLevel()) + "\n Your Permission level: " + Chat.permLevel(Chat.permissionLevel(event)))
+                            Message.ERROR(event, "Please give me the following Permission: ``" + missing.getName() + "``")
                                     .build()).queue();
-                break;
+                } catch (InsufficientPermissionException error){ }
+            } catch (Exception e){
+                event.getTextChannel().sendMessage(Message.INTERNAL_ERROR(event, e).build()).queue();
+                e.printStackTrace();
             }
-        }
+        else
+            event.getTextChannel().sendMessage(
+                    Message.ERROR(event, "You do not have the required permissions to execute that command\n Needed Permission level: " +
+                            Chat.permLevel(command.permissionLevel()) + "\n Your Permission level: " + Chat.permLevel(Chat.permissionLevel(event)))
+                            .build()).queue();
+    }
+
+    public static ChatCommand getCommand(String cmd){
+        return commandMap.get(cmd);
+    }
+
+    public static CommandExecutor getExecutor(){
+        return executor;
     }
 
     public ChatHandler addCommand(ChatCommand command){
+        for (String alias : command.aliases()){
+            ChatCommand registered = commandMap.putIfAbsent(alias, command);
+            if (registered != null)
+                throw new IllegalStateException("The alias '" + alias + "' of " + command.getClass().getSimpleName()
+                        + " is already used by " + registered.getClass().getSimpleName());
+        }
         chatCommands.add(command);
         return this;
     }
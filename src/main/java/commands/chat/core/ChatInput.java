@@ -0,0 +1,79 @@
+package commands.chat.core;
+/*
+    Created by nils on 08.02.2018 at 17:12.
+    
+    (c) nils 2018
+*/
+
+/**
+ * A chat message split into command name and arguments. The message is scanned once, without regular expressions,
+ * and only the command name is lower-cased - arguments keep the casing the user typed (bios, urls, ...).
+ */
+public class ChatInput {
+
+    public final String full;
+    public final String cmd;
+    public final String[] args;
+
+    private ChatInput(String full, String cmd, String[] args) {
+        this.full = full;
+        this.cmd = cmd;
+        this.args = args;
+    }
+
+    /**
+     * @return the parsed input, or null if the message does not start with the prefix (case-insensitive)
+     */
+    public static ChatInput parse(String message, String prefix){
+        int end = message.length();
+        while (end > 0 && message.charAt(end - 1) <= ' ')
+            end--;
+
+        int start = 0;
+        while (start < end && message.charAt(start) <= ' ')
+            start++;
+
+        if (end - start < prefix.length() || !message.regionMatches(true, start, prefix, 0, prefix.length()))
+            return null;
+
+        int pos = skipSpaces(message, start + prefix.length(), end);
+        int cmdEnd = nextSpace(message, pos, end);
+
+        String cmd = message.substring(pos, cmdEnd).toLowerCase();
+        String full = message.substring(pos, end);
+
+        return new ChatInput(full, cmd, tokenize(message, cmdEnd, end));
+    }
+
+    private static String[] tokenize(String message, int from, int end){
+        int count = 0;
+        for (int pos = skipSpaces(message, from, end); pos < end; pos = skipSpaces(message, nextSpace(message, pos, end), end))
+            count++;
+
+        // a new array per message, a command may overwrite its arguments; commands check for args[0].equals("")
+        if (count == 0)
+            return new String[]{""};
+
+        String[] args = new String[count];
+        int i = 0;
+        for (int pos = skipSpaces(message, from, end); pos < end; ){
+            int tokenEnd = nextSpace(message, pos, end);
+            args[i++] = message.substring(pos, tokenEnd);
+            pos = skipSpaces(message, tokenEnd, end);
+        }
+        return args;
+    }
+
+    private static int skipSpaces(String s, int pos, int end){
+        while (pos < end && s.charAt(pos) == ' ')
+            pos++;
+        return pos;
+    }
+
+    private static int nextSpace(String s, int pos, int end){
+        while (pos < end && s.charAt(pos) != ' ')
+            pos++;
+        return pos;
+    }
+
+}
@@ -0,0 +1,159 @@
+package commands.chat.core;
+/*
+    Created by nils on 09.02.2018 at 14:26.
+    
+    (c) nils 2018
+*/
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs command actions off the JDA event thread. Tasks of the same guild run one after another in the order they
+ * were submitted, tasks of different guilds run in parallel on the shared pool.
+ */
+public class CommandExecutor {
+
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Long, GuildQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final int guildQueueLimit;
+    private final int queueLimit;
+
+    /**
+     * @param poolSize threads of the pool, ignored when virtual threads are used
+     * @param guildQueueLimit max. tasks waiting per guild
+     * @param queueLimit max. tasks waiting over all guilds
+     * @param virtualThreads use one virtual thread per task if the JVM supports them
+     */
+    public CommandExecutor(int poolSize, int guildQueueLimit, int queueLimit, boolean virtualThreads){
+        this.guildQueueLimit = guildQueueLimit;
+        this.queueLimit = queueLimit;
+
+        ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtual != null)
+            executor = virtual;
+        else
+            executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new WorkerFactory());
+    }
+
+    /**
+     * @return false if the task was rejected because too many tasks are waiting
+     */
+    public boolean submit(long guildId, Runnable task){
+        while (true) {
+            GuildQueue queue = queues.computeIfAbsent(guildId, GuildQueue::new);
+
+            synchronized (queue){
+                // drained and removed from the map right before, the next computeIfAbsent creates a new one
+                if (queue.removed)
+                    continue;
+                if (queue.tasks.size() >= guildQueueLimit)
+                    return false;
+                if (pending.incrementAndGet() > queueLimit){
+                    pending.decrementAndGet();
+                    if (!queue.running)
+                        queue.remove();
+                    return false;
+                }
+
+                queue.tasks.add(task);
+                if (!queue.running){
+                    queue.running = true;
+                    schedule(queue);
+                }
+            }
+            return true;
+        }
+    }
+
+    public int getPending(){
+        return pending.get();
+    }
+
+    public void shutdown(){
+        executor.shutdown();
+    }
+
+    private void schedule(GuildQueue queue){
+        try {
+            executor.execute(queue::runNext);
+        } catch (RejectedExecutionException e){
+            // only happens after shutdown, drop what is left of this guild
+            pending.addAndGet(-queue.tasks.size());
+            queue.tasks.clear();
+            queue.running = false;
+            queue.remove();
+        }
+    }
+
+    private class GuildQueue {
+        private final long guildId;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean running = false;
+        private boolean removed = false;
+
+        private GuildQueue(long guildId){
+            this.guildId = guildId;
+        }
+
+        // only called while holding the lock of the queue, so no task can be added after this
+        private void remove(){
+            removed = true;
+            queues.remove(guildId, this);
+        }
+
+        // runs one task and hands the guild back to the pool, so a busy guild can not starve the others
+        private void runNext(){
+            Runnable task;
+            synchronized (this){
+                task = tasks.poll();
+            }
+
+            try {
+                task.run();
+            } catch (Throwable t){
+                t.printStackTrace();
+            } finally {
+                pending.decrementAndGet();
+                synchronized (this){
+                    if (tasks.isEmpty()){
+                        running = false;
+                        remove();
+                    } else
+                        schedule(this);
+                }
+            }
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e){
+            return null; // JVM without virtual threads
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Command-Worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
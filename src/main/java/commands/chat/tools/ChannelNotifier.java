@@ -0,0 +1,215 @@
+package commands.chat.tools;
+/*
+    Created by nils on 18.02.2018 at 19:02.
+    
+    (c) nils 2018
+*/
+
+import core.Main;
+import net.dv8tion.jda.core.EmbedBuilder;
+import net.dv8tion.jda.core.entities.MessageEmbed;
+import net.dv8tion.jda.core.entities.TextChannel;
+import utils.Static;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces the notifications of a text channel (queued tracks, track starts) to save the message rate limit of the
+ * channel for the important messages. Notifications arriving within {@link Static.Notifications#WINDOW} of each other
+ * (at most {@link Static.Notifications#MAX_DELAY} after the first one) are merged into one embed. If the last message
+ * of the notifier is still the latest message of the channel, it is edited instead of sending a new one.
+ *
+ * Embeds with a title (errors, wrong syntax) are never merged, they are sent right away after the pending ones.
+ */
+public class ChannelNotifier {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Channel-Notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ConcurrentMap<Long, Channel> channels = new ConcurrentHashMap<>();
+
+    private static final AtomicLong notifications = new AtomicLong();
+    private static final AtomicLong restCalls = new AtomicLong();
+
+    static {
+        // a channel whose last message can not be edited anymore has nothing left to remember
+        scheduler.scheduleWithFixedDelay(ChannelNotifier::evictIdle, Static.Notifications.EDIT_WINDOW, Static.Notifications.EDIT_WINDOW, TimeUnit.MILLISECONDS);
+    }
+
+    public static void notify(TextChannel channel, MessageEmbed embed){
+        notifications.incrementAndGet();
+        if (embed.getTitle() != null) {
+            Channel state = channels.get(channel.getIdLong());
+            if (state != null)
+                state.flush();
+            restCalls.incrementAndGet();
+            channel.sendMessage(embed).queue();
+        } else {
+            // evicted right before, the next computeIfAbsent creates a new state
+            while (!channels.computeIfAbsent(channel.getIdLong(), Channel::new).add(embed));
+        }
+    }
+
+    private static void evictIdle(){
+        long now = System.currentTimeMillis();
+        for (Channel channel : channels.values())
+            channel.evictIfIdle(now);
+    }
+
+    /**
+     * @return notifications, REST calls made for them and the calls saved by merging them
+     */
+    public static String getStats(){
+        long pending = 0;
+        for (Channel channel : channels.values())
+            pending += channel.pending();
+        long sent = notifications.get() - pending;
+        return "notifications: " + sent + ", rest calls: " + restCalls.get() + ", saved: " + (sent - restCalls.get());
+    }
+
+    // merges the embeds into one, null if the text does not fit into one embed
+    private static MessageEmbed merge(List<MessageEmbed> embeds){
+        if (embeds.size() == 1)
+            return embeds.get(0);
+
+        StringBuilder text = new StringBuilder();
+        MessageEmbed.Footer footer = embeds.get(0).getFooter();
+        for (MessageEmbed embed : embeds) {
+            if (embed.getDescription() == null)
+                continue;
+            if (text.length() > 0)
+                text.append("\n\n");
+            text.append(embed.getDescription());
+            if (footer != null && (embed.getFooter() == null || !Objects.equals(footer.getText(), embed.getFooter().getText())))
+                footer = null; // different requesters
+        }
+        if (text.length() > MessageEmbed.TEXT_MAX_LENGTH)
+            return null;
+
+        EmbedBuilder builder = Message.INFO_RAW(text.toString());
+        if (footer != null)
+            builder.setFooter(footer.getText(), footer.getIconUrl());
+        return builder.build();
+    }
+
+    private static class Channel {
+        private final long id;
+        private final List<MessageEmbed> pending = new ArrayList<>();
+        private long firstPending;
+        private ScheduledFuture<?> task;
+
+        // the last message of the notifier and the embeds shown in it
+        private long lastMessage;
+        private long lastSent;
+        private List<MessageEmbed> shown = new ArrayList<>();
+
+        private final long created = System.currentTimeMillis();
+        private boolean evicted = false;
+
+        private Channel(long id){
+            this.id = id;
+        }
+
+        // nothing pending and the last message is older than the edit window
+        private synchronized void evictIfIdle(long now){
+            if (!pending.isEmpty() || now - Math.max(created, lastSent) < Static.Notifications.EDIT_WINDOW)
+                return;
+            evicted = true;
+            channels.remove(id, this);
+        }
+
+        private synchronized int pending(){
+            return pending.size();
+        }
+
+        /**
+         * @return false if the state was evicted, the embed has to be added to a new one
+         */
+        private synchronized boolean add(MessageEmbed embed){
+            if (evicted)
+                return false;
+
+            long now = System.currentTimeMillis();
+            if (pending.isEmpty())
+                firstPending = now;
+            pending.add(embed);
+
+            // debounce, but never longer than the max. delay after the first pending notification
+            if (task != null)
+                task.cancel(false);
+            long delay = Math.min(Static.Notifications.WINDOW, Math.max(0, firstPending + Static.Notifications.MAX_DELAY - now));
+            task = scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+            return true;
+        }
+
+        private synchronized void flush(){
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+            if (pending.isEmpty())
+                return;
+
+            List<MessageEmbed> batch = new ArrayList<>(pending);
+            pending.clear();
+
+            TextChannel channel = Main.jda != null ? Main.jda.getTextChannelById(id) : null;
+            if (channel == null) {
+                evicted = true;
+                channels.remove(id, this);
+                return;
+            }
+
+            boolean latest = lastMessage != 0 && channel.hasLatestMessage() && channel.getLatestMessageIdLong() == lastMessage
+                    && System.currentTimeMillis() - lastSent < Static.Notifications.EDIT_WINDOW;
+            if (latest) {
+                List<MessageEmbed> edited = new ArrayList<>(shown);
+                edited.addAll(batch);
+                MessageEmbed merged = merge(edited);
+                if (merged != null) {
+                    restCalls.incrementAndGet();
+                    channel.editMessageById(lastMessage, merged).queue();
+                    shown = edited;
+                    return;
+                }
+            }
+
+            // a new message, with as many of the newest notifications as fit into it
+            while (batch.size() > 1 && merge(batch) == null)
+                send(channel, batch.remove(0));
+            send(channel, batch);
+        }
+
+        private void send(TextChannel channel, MessageEmbed embed){
+            List<MessageEmbed> batch = new ArrayList<>(1);
+            batch.add(embed);
+            send(channel, batch);
+        }
+
+        private void send(TextChannel channel, List<MessageEmbed> batch){
+            restCalls.incrementAndGet();
+            lastMessage = 0;
+            lastSent = System.currentTimeMillis(); // keeps the state from being evicted while the message is sent
+            channel.sendMessage(merge(batch)).queue(message -> {
+                synchronized (this) {
+                    lastMessage = message.getIdLong();
+                    lastSent = System.currentTimeMillis();
+                    shown = batch;
+                }
+            });
+        }
+    }
+
+}
@@ -27,6 +27,14 @@ public class Message {
         return builder;
     }
 
+    public static EmbedBuilder INFO(Member member, String message){
+        EmbedBuilder builder = INFO(member);
+
+        builder.setDescription(message);
+
+        return builder;
+    }
+
     public static EmbedBuilder INFO(MessageReceivedEvent event){
         return INFO(event.getMember());
     }
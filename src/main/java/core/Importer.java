@@ -5,7 +5,6 @@ package core;
     (c) nils 2017
 */
 
-import audio.AudioCore;
 import commands.chat.commands.admin.Clear;
 import commands.chat.commands.fun.TTS;
 import commands.chat.commands.fun.Poke;
@@ -14,6 +13,7 @@ import commands.chat.commands.money.Slots;
 import commands.chat.commands.music.*;
 import commands.chat.commands.testing.Error;
 import commands.chat.commands.testing.Ping;
+import commands.chat.commands.testing.Stats;
 import commands.chat.core.ChatHandler;
 import listeners.ChatCommandListener;
 import listeners.ReadyListener;
@@ -52,9 +52,12 @@ public class Importer {
             //Music
                 .addCommand(new Connect())
                 .addCommand(new Info())
+                .addCommand(new Loop())
                 .addCommand(new Pause())
                 .addCommand(new Play())
+                .addCommand(new PlayTop())
                 .addCommand(new Playlist())
+                .addCommand(new PlaylistLimit())
                 .addCommand(new Resume())
                 .addCommand(new Skip())
                 .addCommand(new Stop())
@@ -63,6 +66,7 @@ public class Importer {
             //Testing
                 .addCommand(new Error())
                 .addCommand(new Ping())
+                .addCommand(new Stats())
 
 
         ;
@@ -73,7 +77,7 @@ public class Importer {
 
         builder .addEventListener(new ReadyListener())
                 .addEventListener(new ChatCommandListener())
-        .addEventListener(new AudioCore());
+        .addEventListener(Main.audioCore);
 
     }
 
@@ -9,6 +9,7 @@ package core;
 import audio.AudioCore;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import commands.console.core.ConsoleHandler;
+import core.files.UserFile;
 import net.dv8tion.jda.core.AccountType;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.JDABuilder;
@@ -20,7 +21,6 @@ import utils.UserSQL;
 
 import javax.security.auth.login.LoginException;
 import java.sql.ResultSet;
-import java.util.Arrays;
 
 public class Main {
 
@@ -30,24 +30,37 @@ public class Main {
 
     public static void main(String[] args){
         UserSQL.login(Secret.SQL_USER, Secret.SQL_PASSWORD, Secret.SQL_DATABASE, Secret.SQL_SERVER);
+        UserFile.migrate();
+        // JDA's own hook is disabled, it would shut down JDA while the queues are still saved
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (audioCore != null)
+                audioCore.shutdown();
+            if (jda != null)
+                jda.shutdown();
+            UserFile.close();
+            UserSQL.close();
+        }, "Shutdown"));
 
         try {
 
             builder = new JDABuilder(AccountType.BOT);
             builder.setToken(Secret.TOKEN);
             builder.setAutoReconnect(true);
+            builder.setEnableShutdownHook(false);
 
             builder.setGame(Game.listening( "beta | -m help"));
 
             builder.setStatus(Static.STATUS);
 
+            audioCore = new AudioCore();
+
             Static.addListeners(builder);
             Static.addConsoleCommands();
             Static.addChatCommands();
 
 
             jda = builder.buildBlocking();
-            audioCore = new AudioCore();
+            audioCore.restoreQueues();
 
             System.out.println(jda.getSelfUser().getName());
 
@@ -5,5 +5,33 @@ package core.files;
     (c) nils 2018
 */
 
+import core.tools.JsonFile;
+import net.dv8tion.jda.core.entities.Guild;
+import utils.Static;
+
 public class ServerFile {
+    private static final String dir = "servers/";
+
+    private final JsonFile file;
+
+    public ServerFile(Guild guild){
+        file = new JsonFile(dir + guild.getId() + ".json");
+    }
+
+    public ServerFile(long guildId){
+        file = new JsonFile(dir + guildId + ".json");
+    }
+
+    /**
+     * @return the max. amount of tracks queued from one playlist
+     */
+    public int getPlaylistLimit(){
+        return ((Number) file.get("playlistLimit", (long) Static.Audio.PLAYLIST_LIMIT)).intValue();
+    }
+
+    public ServerFile setPlaylistLimit(int limit){
+        file.set("playlistLimit", (long) Math.max(1, Math.min(limit, Static.Audio.MAX_PLAYLIST_LIMIT)));
+        return this;
+    }
+
 }
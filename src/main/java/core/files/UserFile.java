@@ -5,63 +5,69 @@ package core.files;
     (c) nils 2018
 */
 
-import core.tools.JsonFile;
+import core.tools.WriteBehindBuffer;
 import net.dv8tion.jda.core.entities.User;
+import utils.Static;
 
-import java.util.List;
+import java.io.File;
+import java.util.Map;
 
+/**
+ * Messages, xp and reputation of a user, kept in the {@link UserStore}. Message and xp changes are merged per user in
+ * write-behind buffers and written to the store in batches, so a busy user takes the store lock once per flush
+ * instead of once per message. Reads include the pending changes.
+ */
 public class UserFile {
     private static final String dir = "users/";
 
-    private final JsonFile file;
+    // one memory-mapped file for all users, updates are plain memory writes
+    private static final UserStore store = new UserStore("data/users.db");
 
-    public UserFile(User user){
-        file = new JsonFile(dir + user.getId() + ".json");
-
-        addFields();
-    }
+    private static final WriteBehindBuffer<Long> messages = new WriteBehindBuffer<>("messages", changes -> write(UserStore.MESSAGES, changes),
+            Static.WriteBehind.FLUSH_INTERVAL, Static.WriteBehind.FLUSH_THRESHOLD);
+    private static final WriteBehindBuffer<Long> xp = new WriteBehindBuffer<>("xp", changes -> write(UserStore.XP, changes),
+            Static.WriteBehind.FLUSH_INTERVAL, Static.WriteBehind.FLUSH_THRESHOLD);
 
-    private void addFields(){
-        addField("registered", true);
-        addField("msgs", 0);
-        addField("xp", 0);
-        addField("reputation", 100);
-    }
+    private final long id;
 
-    private void addField(String key, Object o){
-        if (file.get(key) == null)
-            file.set(key, o);
+    public UserFile(User user){
+        this.id = user.getIdLong();
     }
 
 
 
     public UserFile addMessages(long n){
-        file.set("msgs", (long) file.get("msgs", 0) + n);
+        messages.add(id, n);
         return this;
     }
 
     public UserFile setMessages(long n){
-        file.set("msgs", n);
+        messages.set(id, n);
         return this;
     }
 
     public long getMessages(){
-        return (long) file.get("msgs");
+        return read(messages, UserStore.MESSAGES);
     }
 
 
     public UserFile addXp(long n){
-        file.set("xp", (long) file.get("xp") + n);
+        xp.add(id, n);
         return this;
     }
 
     public UserFile setXp(long n){
-        file.set("xp", n);
+        xp.set(id, n);
         return this;
     }
 
     public long getXp(){
-        return (long) file.get("xp");
+        return read(xp, UserStore.XP);
+    }
+
+    // the stored value plus the pending change, no flush can take the change before it is stored
+    private long read(WriteBehindBuffer<Long> buffer, int field){
+        return buffer.read(() -> buffer.apply(id, store.getLong(id, field)));
     }
 
     public long getLevel(){
@@ -73,4 +79,35 @@ public class UserFile {
         return level;
     }
 
+    public int getReputation(){
+        return store.contains(id) ? store.getInt(id, UserStore.REPUTATION) : 100;
+    }
+
+    /**
+     * Writes the pending message and xp changes and the changed pages of the user store to disk, called on shutdown.
+     */
+    public static void close(){
+        messages.close();
+        xp.close();
+        store.force();
+    }
+
+    private static void write(int field, Map<Long, WriteBehindBuffer.Change> changes){
+        for (Map.Entry<Long, WriteBehindBuffer.Change> change : changes.entrySet()) {
+            if (change.getValue().isOverwrite())
+                store.setLong(change.getKey(), field, change.getValue().getValue());
+            else
+                store.addLong(change.getKey(), field, change.getValue().getValue());
+        }
+    }
+
+    /**
+     * Imports the users/<id>.json files of older versions once.
+     */
+    public static void migrate(){
+        File old = new File(dir);
+        if (old.isDirectory())
+            System.out.println("Imported " + store.migrate(old) + " user files into the user store");
+    }
+
 }
@@ -0,0 +1,252 @@
+package core.files;
+/*
+    Created by nils on 12.02.2018 at 19:47.
+    
+    (c) nils 2018
+*/
+
+import core.tools.JsonFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * All user files in one memory-mapped file. The file is an open addressing hash table of fixed size records, indexed
+ * by the user id:
+ *
+ *  header (16 bytes): magic, version, capacity, size
+ *  record (32 bytes): user id (0 = free), messages, xp, reputation (int), registered (int)
+ *
+ * The table is doubled in place once it is filled to 70%.
+ */
+public class UserStore {
+
+    private static final int MAGIC = 0x4D555352; // MUSR
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int MAX_CAPACITY = 1 << 25;
+
+    static final int MESSAGES = 8;
+    static final int XP = 16;
+    static final int REPUTATION = 24;
+    static final int REGISTERED = 28;
+
+    private final File file;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    public UserStore(String path) {
+        this.file = new File(path);
+        try {
+            if (file.exists()) {
+                map(file, (int) file.length());
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                    throw new IOException(path + " is no user store");
+                capacity = buffer.getInt(8);
+                size = buffer.getInt(12);
+            } else {
+                if (file.getParentFile() != null)
+                    file.getParentFile().mkdirs();
+                create(file, INITIAL_CAPACITY);
+            }
+        } catch (IOException e){
+            throw new IllegalStateException("Could not open user store " + path, e);
+        }
+    }
+
+    private void map(File file, int length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    private void create(File file, int capacity) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        }
+        map(file, HEADER_SIZE + capacity * RECORD_SIZE);
+        this.capacity = capacity;
+        this.size = 0;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, capacity);
+        buffer.putInt(12, 0);
+    }
+
+    public synchronized long getLong(long id, int field){
+        int record = find(id);
+        return record < 0 ? 0 : buffer.getLong(record + field);
+    }
+
+    public synchronized void setLong(long id, int field, long value){
+        // insert first, growing maps a new buffer
+        int record = insert(id);
+        buffer.putLong(record + field, value);
+    }
+
+    public synchronized long addLong(long id, int field, long n){
+        int record = insert(id);
+        long value = buffer.getLong(record + field) + n;
+        buffer.putLong(record + field, value);
+        return value;
+    }
+
+    public synchronized int getInt(long id, int field){
+        int record = find(id);
+        return record < 0 ? 0 : buffer.getInt(record + field);
+    }
+
+    public synchronized void setInt(long id, int field, int value){
+        int record = insert(id);
+        buffer.putInt(record + field, value);
+    }
+
+    public synchronized boolean contains(long id){
+        return find(id) >= 0;
+    }
+
+    public synchronized int size(){
+        return size;
+    }
+
+    /**
+     * Writes the changed pages to disk.
+     */
+    public synchronized void force(){
+        buffer.force();
+    }
+
+    // offset of the record of the user, or -1
+    private int find(long id){
+        for (int slot = slot(id, capacity); ; slot = (slot + 1) & (capacity - 1)) {
+            int record = HEADER_SIZE + slot * RECORD_SIZE;
+            long stored = buffer.getLong(record);
+            if (stored == id)
+                return record;
+            if (stored == 0)
+                return -1;
+        }
+    }
+
+    // offset of the record of the user, the record is created with default values if needed
+    private int insert(long id){
+        if (id == 0)
+            throw new IllegalArgumentException("0 is no valid user id");
+
+        int record = find(id);
+        if (record >= 0)
+            return record;
+
+        if ((size + 1) * 10L > capacity * 7L)
+            grow();
+
+        for (int slot = slot(id, capacity); ; slot = (slot + 1) & (capacity - 1)) {
+            record = HEADER_SIZE + slot * RECORD_SIZE;
+            if (buffer.getLong(record) == 0) {
+                buffer.putLong(record, id);
+                buffer.putLong(record + MESSAGES, 0);
+                buffer.putLong(record + XP, 0);
+                buffer.putInt(record + REPUTATION, 100);
+                buffer.putInt(record + REGISTERED, 1);
+                buffer.putInt(12, ++size);
+                return record;
+            }
+        }
+    }
+
+    private void grow(){
+        if (capacity >= MAX_CAPACITY)
+            throw new IllegalStateException("User store is full");
+
+        int oldCapacity = capacity;
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(HEADER_SIZE + (long) oldCapacity * 2 * RECORD_SIZE);
+            }
+            map(file, HEADER_SIZE + oldCapacity * 2 * RECORD_SIZE);
+        } catch (IOException e){
+            throw new IllegalStateException("Could not grow user store", e);
+        }
+        capacity = oldCapacity * 2;
+
+        // every record is put again into the doubled table, its new home slot is the old one or the old one plus the
+        // old capacity. Going once around the old slots from a free one on, no run of records is cut in two, so the
+        // records a moved record passes on its way are moved already and stay where they are
+        int start = 0;
+        while (buffer.getLong(HEADER_SIZE + start * RECORD_SIZE) != 0)
+            start++;
+        for (int i = 0; i < oldCapacity; i++)
+            move((start + i) & (oldCapacity - 1));
+
+        buffer.putInt(8, capacity);
+    }
+
+    // takes the record out of its slot and puts it into the first free slot from its home slot on
+    private void move(int from){
+        int record = HEADER_SIZE + from * RECORD_SIZE;
+        long id = buffer.getLong(record);
+        if (id == 0)
+            return;
+
+        long[] fields = new long[RECORD_SIZE / 8];
+        for (int b = 0; b < RECORD_SIZE; b += 8)
+            fields[b / 8] = buffer.getLong(record + b);
+        buffer.putLong(record, 0);
+
+        int slot = slot(id, capacity);
+        while (buffer.getLong(HEADER_SIZE + slot * RECORD_SIZE) != 0)
+            slot = (slot + 1) & (capacity - 1);
+
+        record = HEADER_SIZE + slot * RECORD_SIZE;
+        for (int b = 0; b < RECORD_SIZE; b += 8)
+            buffer.putLong(record + b, fields[b / 8]);
+    }
+
+    // package-private for the tests
+    static int slot(long id, int capacity){
+        // snowflakes share their low bits (worker/process/increment), so mix in the timestamp bits
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (capacity - 1);
+    }
+
+    /**
+     * Imports the old users/<id>.json files and moves the directory to <dir>.migrated, so this runs only once.
+     *
+     * @return the amount of imported users
+     */
+    public int migrate(File dir){
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
+        if (files == null)
+            return 0;
+
+        int imported = 0;
+        for (File json : files) {
+            long id;
+            try {
+                id = Long.parseLong(json.getName().substring(0, json.getName().length() - ".json".length()));
+            } catch (NumberFormatException e){
+                continue;
+            }
+
+            JsonFile old = new JsonFile(json.getPath());
+            setLong(id, MESSAGES, ((Number) old.get("msgs", 0L)).longValue());
+            setLong(id, XP, ((Number) old.get("xp", 0L)).longValue());
+            setInt(id, REPUTATION, ((Number) old.get("reputation", 100L)).intValue());
+            imported++;
+        }
+        force();
+
+        if (!dir.renameTo(new File(dir.getPath() + ".migrated")))
+            System.out.println("Could not rename " + dir + ", it will be imported again on the next start");
+        return imported;
+    }
+
+}
@@ -0,0 +1,52 @@
+package core.tools;
+/*
+    Created by nils on 18.02.2018 at 13:27.
+    
+    (c) nils 2018
+*/
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Helpers for CompletableFuture chains (Java 8 has no orTimeout).
+ */
+public class Futures {
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Future-Timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Completes the future with a TimeoutException if it is not done within the timeout. Pass a dependent future if
+     * the future is shared, the timeout completes it for everyone.
+     *
+     * @param timeout in milliseconds
+     * @return the future itself
+     */
+    public static <T> CompletableFuture<T> timeout(CompletableFuture<T> future, long timeout){
+        if (future.isDone())
+            return future;
+        ScheduledFuture<?> task = timer.schedule(() -> future.completeExceptionally(new TimeoutException()), timeout, TimeUnit.MILLISECONDS);
+        future.whenComplete((result, error) -> task.cancel(false));
+        return future;
+    }
+
+    /**
+     * @return the exception that failed a chain, without the CompletionException/ExecutionException wrappers
+     */
+    public static Throwable unwrap(Throwable error){
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null)
+            error = error.getCause();
+        return error;
+    }
+
+}
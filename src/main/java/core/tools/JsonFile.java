@@ -11,39 +11,96 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
 
+/**
+ * A json object stored on disk. Changes are appended to a journal (<path>.log) instead of rewriting the whole file,
+ * the journal is merged back into the file every {@link #COMPACT_AFTER} changes. The file itself is always replaced
+ * atomically (temp file + rename), so a crash can not leave a half written file behind.
+ */
 public class JsonFile {
+
+    private static final int COMPACT_AFTER = 100;
+
     String path;
     JSONObject main;
 
+    private final File file;
+    private final File journal;
+    private int journalEntries = 0;
+
     public JsonFile(String path) {
-        path = path;
         this.path = path;
+        this.file = new File(path);
+        this.journal = new File(path + ".log");
         try {
-            File file = new File(path);
-
             if (!file.exists()) {
-                file.getParentFile().mkdirs();
-                file.createNewFile();
-                save(new JSONObject());
+                if (file.getParentFile() != null)
+                    file.getParentFile().mkdirs();
+                main = new JSONObject();
+            } else {
+                try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                    main = (JSONObject) new JSONParser().parse(reader);
+                }
             }
-            main = (JSONObject) new JSONParser().parse(new FileReader(path));
+
+            boolean torn = replayJournal();
+
+            // a torn line must not stay in the journal: the next append would end up behind it and be lost on replay
+            if (torn || !file.exists() || journalEntries >= COMPACT_AFTER)
+                compact();
 
         } catch (Exception e){
             e.printStackTrace();
         }
     }
 
-    public void set(String key, Object value){
+    /**
+     * @return true if the journal ends with a torn line
+     */
+    private boolean replayJournal() throws IOException {
+        if (!journal.exists())
+            return false;
+
+        JSONParser parser = new JSONParser();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    main.putAll((JSONObject) parser.parse(line));
+                    journalEntries++;
+                } catch (Exception e){
+                    return true; // torn write at the end of the journal, everything before it is intact
+                }
+            }
+        }
+        return false;
+    }
+
+    public synchronized void set(String key, Object value){
+        JSONObject change = new JSONObject();
+        change.put(key, value);
+        set(change);
+    }
+
+    /**
+     * Sets all values with a single journal entry.
+     */
+    public synchronized void set(Map<String, Object> values){
+        if (values.isEmpty())
+            return;
         try {
-            main.put(key, value);
-            save(main);
+            main.putAll(values);
+            append(JSONObject.toJSONString(values));
         } catch (Exception e){
             e.printStackTrace();
         }
     }
 
-    public Object get(String key, Object filler){
+    public synchronized Object get(String key, Object filler){
         if (main.containsKey(key))
             return main.get(key);
         return filler;
@@ -53,20 +110,41 @@ public class JsonFile {
         return get(key, null);
     }
 
-    private void save(JSONObject object){
+    private void append(String line) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(journal, true), StandardCharsets.UTF_8)) {
+            writer.write(line);
+            writer.write('\n');
+        }
+
+        if (++journalEntries >= COMPACT_AFTER)
+            compact();
+    }
+
+    /**
+     * Writes the current state to the file and clears the journal.
+     */
+    public synchronized void compact(){
         try {
-            FileWriter writer = new FileWriter(path);
-            writer.write(object.toJSONString());
-            writer.flush();
-            writer.close();
+            File temp = new File(path + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp);
+                 Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                writer.write(main.toJSONString());
+                writer.flush();
+                out.getFD().sync();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // replaying an old journal over the new file would do no harm, so a crash before this line is fine
+            Files.deleteIfExists(journal.toPath());
+            journalEntries = 0;
         } catch (Exception e){
             e.printStackTrace();
         }
     }
 
-    public void delete(){
-        File file = new File(path);
+    public synchronized void delete(){
         file.delete();
+        journal.delete();
     }
 
 }
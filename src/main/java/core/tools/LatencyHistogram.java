@@ -0,0 +1,104 @@
+package core.tools;
+/*
+    Created by nils on 17.02.2018 at 18:51.
+    
+    (c) nils 2018
+*/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Every power of two is split into 8 buckets, so percentiles are
+ * accurate to 12.5% while recording is a single atomic increment.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + 60 * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos){
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos));
+    }
+
+    public long getCount(){
+        return count.get();
+    }
+
+    public long getMax(){
+        return max.get();
+    }
+
+    public long getMean(){
+        long count = getCount();
+        return count == 0 ? 0 : sum.get() / count;
+    }
+
+    /**
+     * @param percentile 0 - 100
+     * @return the upper bound of the bucket the percentile falls into, in nanoseconds
+     */
+    public long getPercentile(double percentile){
+        long total = getCount();
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(upperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    public void reset(){
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @return count, mean, p50, p99 and max in milliseconds
+     */
+    public String getStats(){
+        return "count: " + getCount() + ", mean: " + millis(getMean()) + "ms, p50: " + millis(getPercentile(50))
+                + "ms, p99: " + millis(getPercentile(99)) + "ms, max: " + millis(getMax()) + "ms";
+    }
+
+    private static String millis(long nanos){
+        return String.valueOf(Math.round(nanos / 10000.0) / 100.0);
+    }
+
+    private static int index(long value){
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + mantissa;
+    }
+
+    private static long upperBound(int index){
+        if (index < SUB_BUCKETS)
+            return index;
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        int mantissa = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + mantissa + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+}
@@ -0,0 +1,123 @@
+package core.tools;
+/*
+    Created by nils on 10.02.2018 at 16:03.
+    
+    (c) nils 2018
+*/
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Small in-process LRU cache. Entries are dropped when the cache is full (least recently used first) or when they
+ * are older than the time to live.
+ */
+public class TimedCache<K, V> {
+
+    private final int maxSize;
+    private final long ttl;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize max. amount of entries
+     * @param ttl time to live of an entry in milliseconds
+     */
+    public TimedCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > TimedCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key){
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expires < System.currentTimeMillis()) {
+            entries.remove(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    public void put(K key, V value){
+        put(key, value, ttl);
+    }
+
+    /**
+     * @param ttl time to live of this entry in milliseconds, instead of the one of the cache
+     */
+    public synchronized void put(K key, V value, long ttl){
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Updates the value only if the key is cached, the time to live is not reset and hits/misses are not counted.
+     */
+    public synchronized void update(K key, UnaryOperator<V> function){
+        Entry<V> entry = entries.get(key);
+        if (entry != null)
+            entries.put(key, new Entry<>(function.apply(entry.value), entry.expires));
+    }
+
+    public synchronized void remove(K key){
+        entries.remove(key);
+    }
+
+    public synchronized void removeExpired(){
+        long now = System.currentTimeMillis();
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext())
+            if (iterator.next().expires < now)
+                iterator.remove();
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public long getHits(){
+        return hits.get();
+    }
+
+    public long getMisses(){
+        return misses.get();
+    }
+
+    public double getHitRate(){
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public String getStats(){
+        return "size: " + size() + "/" + maxSize + ", hits: " + getHits() + ", misses: " + getMisses()
+                + ", hit rate: " + Math.round(getHitRate() * 1000) / 10.0 + "%";
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expires;
+
+        private Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+}
@@ -17,8 +17,20 @@ public class Tools {
         return out;
     }
 
+    /**
+     * @return the number, or the fallback if the text is not a number
+     */
+    public static int parseInt(String text, int fallback){
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e){
+            return fallback;
+        }
+    }
+
     public static boolean isUrl(String url){
-        return url.startsWith("http://") || url.startsWith("https://");
+        // chat input keeps the casing of the message, the scheme is case-insensitive
+        return url.regionMatches(true, 0, "http://", 0, 7) || url.regionMatches(true, 0, "https://", 0, 8);
     }
 
 }
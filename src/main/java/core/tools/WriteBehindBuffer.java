@@ -0,0 +1,216 @@
+package core.tools;
+/*
+    Created by nils on 11.02.2018 at 13:12.
+    
+    (c) nils 2018
+*/
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+
+/**
+ * Collects increments per key in memory and writes them out in one go, either every flush interval or as soon as
+ * the threshold of pending keys is reached. Increments of the same key are merged, so a busy user costs one write
+ * per flush instead of one per event.
+ *
+ * Overwrites go through the buffer as well. A key has at most one pending change and flushes run one at a time, so
+ * an overwrite is never undone by increments of an older flush that are written after it.
+ *
+ * A reader that combines the written value with the pending change runs through {@link #read(Reader)}: no flush runs
+ * at the same time, so a change is always either written already or still pending, never in between.
+ */
+public class WriteBehindBuffer<K> {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "WriteBehind-Flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface Flusher<K> {
+        void flush(Map<K, Change> changes) throws Exception;
+    }
+
+    public interface Reader<T, E extends Exception> {
+        T read() throws E;
+    }
+
+    /**
+     * Pending change of one key: either an increment or an overwrite (plus the increments added after it).
+     */
+    public static final class Change {
+        private final boolean overwrite;
+        private final long value;
+
+        private Change(boolean overwrite, long value) {
+            this.overwrite = overwrite;
+            this.value = value;
+        }
+
+        public boolean isOverwrite() {
+            return overwrite;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        /**
+         * @return the value after this change was written
+         */
+        public long applyTo(long current) {
+            return overwrite ? value : current + value;
+        }
+
+        // this change followed by the next one
+        private Change then(Change next) {
+            return next.overwrite ? next : new Change(overwrite, value + next.value);
+        }
+    }
+
+    private final String name;
+    private final Flusher<K> flusher;
+    private final int threshold;
+
+    private final ConcurrentHashMap<K, Change> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    // readers share it, a flush takes it exclusively
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final ScheduledFuture<?> flushes;
+
+    /**
+     * @param name used in error messages
+     * @param flusher writes the merged changes, a failed flush is retried with the next one
+     * @param interval flush interval in milliseconds
+     * @param threshold amount of pending keys that triggers a flush before the interval is over
+     */
+    public WriteBehindBuffer(String name, Flusher<K> flusher, long interval, int threshold) {
+        this.name = name;
+        this.flusher = flusher;
+        this.threshold = threshold;
+
+        flushes = scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void add(K key, long increment){
+        add(key, increment, null);
+    }
+
+    /**
+     * @param onChange runs while the key is locked, after the increment was merged
+     */
+    public void add(K key, long increment, Runnable onChange){
+        change(key, new Change(false, increment), onChange);
+    }
+
+    public void set(K key, long value){
+        set(key, value, null);
+    }
+
+    /**
+     * Overwrites the value of this key, increments that are still pending are dropped.
+     *
+     * @param onChange runs while the key is locked, after the overwrite was merged
+     */
+    public void set(K key, long value, Runnable onChange){
+        change(key, new Change(true, value), onChange);
+    }
+
+    private void change(K key, Change change, Runnable onChange){
+        pending.compute(key, (k, older) -> {
+            Change merged = older == null ? change : older.then(change);
+            if (onChange != null)
+                onChange.run();
+            return merged;
+        });
+
+        if (pending.size() >= threshold && flushQueued.compareAndSet(false, true))
+            scheduler.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+    }
+
+    /**
+     * @param current the value that is written already
+     * @return the value once the pending change of this key is written
+     */
+    public long apply(K key, long current){
+        Change change = pending.get(key);
+        return change == null ? current : change.applyTo(current);
+    }
+
+    /**
+     * Like {@link #apply(Object, long)}, but the function runs while the key is locked: an add or set of the key,
+     * including its onChange, runs completely before or after it.
+     */
+    public <V> V apply(K key, long current, LongFunction<V> function){
+        Object[] result = new Object[1];
+        pending.compute(key, (k, change) -> {
+            result[0] = function.apply(change == null ? current : change.applyTo(current));
+            return change;
+        });
+        @SuppressWarnings("unchecked")
+        V value = (V) result[0];
+        return value;
+    }
+
+    /**
+     * Runs the reader while no flush is running, readers do not wait for each other.
+     */
+    public <T, E extends Exception> T read(Reader<T, E> reader) throws E {
+        flushLock.readLock().lock();
+        try {
+            return reader.read();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    public int size(){
+        return pending.size();
+    }
+
+    public void flush(){
+        flushLock.writeLock().lock();
+        try {
+            if (pending.isEmpty())
+                return;
+
+            Map<K, Change> changes = new HashMap<>();
+            for (K key : pending.keySet()) {
+                Change change = pending.remove(key);
+                if (change != null)
+                    changes.put(key, change);
+            }
+
+            try {
+                flusher.flush(changes);
+            } catch (Exception e){
+                // keep the changes in front of the ones made since, they are written with the next flush
+                changes.forEach((key, change) -> pending.merge(key, change, (newer, older) -> older.then(newer)));
+                System.out.println("Could not flush " + name + ": " + e.getMessage());
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the flushes of the interval and writes the pending changes. Changes made afterwards are only written by
+     * a flush call or once the threshold is reached.
+     */
+    public void close(){
+        flushes.cancel(false);
+        flush();
+    }
+
+}
@@ -6,6 +6,7 @@ package listeners;
 */
 
 import commands.chat.core.ChatHandler;
+import commands.chat.core.ChatInput;
 import net.dv8tion.jda.core.entities.Emote;
 import net.dv8tion.jda.core.entities.PrivateChannel;
 import net.dv8tion.jda.core.entities.User;
@@ -21,13 +22,16 @@ public class ChatCommandListener extends ListenerAdapter {
     @Override
     public void onMessageReceived(MessageReceivedEvent event) {
 
-        String msg = event.getMessage().getContentRaw().trim();
+        String raw = event.getMessage().getContentRaw();
 
-        if (!event.getAuthor().isBot() && !event.getAuthor().isFake() && msg.toLowerCase().startsWith(Static.PREFIX)) {
-            String trimmed = msg.toLowerCase().replaceFirst(Static.PREFIX, "").trim();
-            ChatHandler.handleInput(event, trimmed);
+        ChatInput input = null;
+        if (!event.getAuthor().isBot() && !event.getAuthor().isFake())
+            input = ChatInput.parse(raw, Static.PREFIX);
 
-        } else if (!event.getAuthor().isBot() && (msg.equals("@"+event.getJDA().getSelfUser().getName()) || msg.equals("@"+event.getGuild().getMember(event.getJDA().getSelfUser()).getNickname())) ){
+        if (input != null) {
+            ChatHandler.handleInput(event, input);
+
+        } else if (!event.getAuthor().isBot() && (raw.trim().equals("@"+event.getJDA().getSelfUser().getName()) || raw.trim().equals("@"+event.getGuild().getMember(event.getJDA().getSelfUser()).getNickname())) ){
 
             PrivateChannel channel = event.getAuthor().openPrivateChannel().complete();
 
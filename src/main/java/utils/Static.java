@@ -41,9 +41,135 @@ public class Static {
     public static final String SERVER_PATH = "servers";
 
 
+    public static class Notifications {
+
+        // notifications of a channel within this time of each other are merged into one message
+        public static long WINDOW = 1500;
+
+        public static long MAX_DELAY = 5 * 1000;
+
+        // the last notification message is only edited within this time
+        public static long EDIT_WINDOW = 5 * 60 * 1000;
+
+    }
+
+    public static class Commands {
+
+        public static int POOL_SIZE = 8;
+
+        public static int GUILD_QUEUE_LIMIT = 10;
+
+        public static int QUEUE_LIMIT = 500;
+
+        public static boolean VIRTUAL_THREADS = true;
+
+    }
+
+    public static class YouTube {
+
+        // root of the Data API, the tests point it at a local server
+        public static String ROOT_URL = "https://www.googleapis.com/";
+
+        public static int CONNECT_TIMEOUT = 5 * 1000;
+
+        public static int READ_TIMEOUT = 10 * 1000;
+
+        // idle keep-alive connections the jdk keeps per host for the client (http.maxConnections)
+        public static int MAX_CONNECTIONS = 20;
+
+        // search results by normalized query, searches without results are cached for a shorter time
+        public static int SEARCH_CACHE_SIZE = 10000;
+
+        public static long SEARCH_CACHE_TTL = 60 * 60 * 1000;
+
+        public static long NO_RESULT_TTL = 10 * 60 * 1000;
+
+        // quota units one search.list call costs
+        public static int SEARCH_QUOTA_COST = 100;
+
+        // threads running the API calls, commands never wait for them
+        public static int IO_THREADS = 4;
+
+        public static long SEARCH_TIMEOUT = 15 * 1000;
+
+        // max. amount of results queued with one playtop command
+        public static int MAX_SEARCH_RESULTS = 10;
+
+    }
+
+    public static class SQL {
+
+        public static int POOL_SIZE = 10;
+
+        public static int MIN_IDLE = 2;
+
+        public static long IDLE_TIMEOUT = 10 * 60 * 1000;
+
+        public static long MAX_LIFETIME = 30 * 60 * 1000;
+
+        public static long CONNECTION_TIMEOUT = 10 * 1000;
+
+        public static long VALIDATION_TIMEOUT = 3 * 1000;
+
+        public static int STATEMENT_CACHE_SIZE = 64;
+
+        public static int USER_CACHE_SIZE = 10000;
+
+        public static long USER_CACHE_TTL = 5 * 60 * 1000;
+
+    }
+
+    // money of UserSQL, messages and xp of UserFile
+    public static class WriteBehind {
+
+        public static long FLUSH_INTERVAL = 10 * 1000;
+
+        public static int FLUSH_THRESHOLD = 1000;
+
+    }
+
     public static class Audio {
 
-        public static int PLAYLIST_LIMIT = 15;
+        // default of the per-guild limit, see ServerFile
+        public static int PLAYLIST_LIMIT = 100;
+
+        public static int MAX_PLAYLIST_LIMIT = 5000;
+
+        // tracks after the current one that are kept decoded, the rest of the queue is stored encoded
+        public static int PRELOAD_AHEAD = 3;
+
+        // time before the end of a track at which the next one starts buffering on the standby player
+        public static long PRELOAD_TIME = 5 * 1000;
+
+        // queue snapshots in queues/, restored after a restart
+        public static long SNAPSHOT_INTERVAL = 10 * 1000;
+
+        public static int SNAPSHOT_LIMIT = 1000;
+
+        public static int SNAPSHOT_MAX_SIZE = 1024 * 1024;
+
+        // resolved tracks by url/identifier, a hit skips the remote lookup
+        public static int TRACK_CACHE_SIZE = 5000;
+
+        public static long TRACK_CACHE_TTL = 60 * 60 * 1000;
+
+        // max. time for loading a searched track or playlist
+        public static long LOAD_TIMEOUT = 20 * 1000;
+
+        // defaults of config/audio.json, see AudioConfig
+        public static int FRAME_BUFFER_DURATION = 5000;
+
+        public static int ITEM_LOADER_POOL_SIZE = 10;
+
+        public static int OPUS_QUALITY = 10;
+
+        public static String RESAMPLING_QUALITY = "LOW";
+
+        public static long TRACK_STUCK_THRESHOLD = 10 * 1000;
+
+        public static long IDLE_TIMEOUT = 10 * 60 * 1000;
+
+        public static long IDLE_CHECK_INTERVAL = 60 * 1000;
 
     }
 
@@ -0,0 +1,42 @@
+package utils;
+/*
+    Created by nils on 10.02.2018 at 16:21.
+    
+    (c) nils 2018
+*/
+
+/**
+ * One row of the users table.
+ */
+public class UserRecord {
+
+    private final String userid;
+    private final int money;
+    private final String bio;
+
+    public UserRecord(String userid, int money, String bio) {
+        this.userid = userid;
+        this.money = money;
+        this.bio = bio;
+    }
+
+    public String getUserid() {
+        return userid;
+    }
+
+    public int getMoney() {
+        return money;
+    }
+
+    public String getBio() {
+        return bio;
+    }
+
+    public UserRecord withMoney(int money){
+        return new UserRecord(userid, money, bio);
+    }
+
+    public UserRecord withBio(String bio){
+        return new UserRecord(userid, money, bio);
+    }
+}
@@ -5,90 +5,209 @@ package utils;
     (c) nils 2018
 */
 
-import com.mysql.jdbc.jdbc2.optional.MysqlDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import core.tools.TimedCache;
+import core.tools.WriteBehindBuffer;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.Map;
 
 public class UserSQL {
 
-    private static MysqlDataSource source = new MysqlDataSource();
+    private static final String DEFAULT_BIO = "``Set a bio with -m bio <bio>``";
+
+    private static final String USER_EXISTS = "select userid from users where userid=?";
+    private static final String GET_USER = "select userid, money, bio from users where userid=?";
+    private static final String CREATE_USER = "insert into users (userid, money, bio) values (?, 0, ?) on duplicate key update userid=userid";
+    private static final String SET_BIO = "insert into users (userid, money, bio) values (?, 0, ?) on duplicate key update bio=values(bio)";
+    private static final String SET_MONEY = "insert into users (userid, money, bio) values (?, ?, ?) on duplicate key update money=values(money)";
+    private static final String ADD_MONEY = "insert into users (userid, money, bio) values (?, ?, ?) on duplicate key update money=money+values(money)";
+
+    private static final TimedCache<String, UserRecord> cache = new TimedCache<>(Static.SQL.USER_CACHE_SIZE, Static.SQL.USER_CACHE_TTL);
+
+    private static final WriteBehindBuffer<String> moneyBuffer = new WriteBehindBuffer<>("money", UserSQL::flushMoney,
+            Static.WriteBehind.FLUSH_INTERVAL, Static.WriteBehind.FLUSH_THRESHOLD);
+
+    private static HikariDataSource source;
 
     public static void login(String sqluser, String password, String database, String server){
         login(sqluser, password, database, server, 3306);
     }
 
     public static void login(String sqluser, String password, String database, String server, int port){
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("UserSQL");
+        config.setJdbcUrl("jdbc:mysql://" + server + ":" + port + "/" + database);
+        config.setUsername(sqluser);
+        config.setPassword(password);
+
+        // the driver caches the prepared statements per pooled connection
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", Static.SQL.STATEMENT_CACHE_SIZE);
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
+
+        login(config);
+    }
 
-        source.setUser(sqluser);
-        source.setPassword(password);
+    public static void login(HikariConfig config){
+        config.setMaximumPoolSize(Static.SQL.POOL_SIZE);
+        config.setMinimumIdle(Static.SQL.MIN_IDLE);
+        config.setIdleTimeout(Static.SQL.IDLE_TIMEOUT);
+        config.setMaxLifetime(Static.SQL.MAX_LIFETIME);
+        config.setConnectionTimeout(Static.SQL.CONNECTION_TIMEOUT);
+        config.setValidationTimeout(Static.SQL.VALIDATION_TIMEOUT);
+
+        if (source != null)
+            source.close();
+        source = new HikariDataSource(config);
+    }
 
-        source.setServerName(server);
-        source.setPort(port);
-        source.setDatabaseName(database);
+    public static DataSource getSource(){
+        return source;
+    }
 
+    /**
+     * Writes the pending money changes now instead of with the next flush interval.
+     */
+    public static void flush(){
+        moneyBuffer.flush();
     }
 
-    public static boolean userExists(String userid){
-        try (Connection c = source.getConnection();) {
-            ResultSet set = c.createStatement().executeQuery("select userid from users where userid='"+ userid + "'");
+    /**
+     * Writes the pending money changes, stops their flush interval and closes the pool.
+     */
+    public static void close(){
+        moneyBuffer.close();
+        if (source != null)
+            source.close();
+    }
+
+    public static TimedCache<String, UserRecord> getCache(){
+        return cache;
+    }
 
-            while (set.next()){
-                if (set.getString("userid").equals(userid))
-                    return true;
+    /**
+     * Loads the whole row of the user, an upsert creates it first if it does not exist yet.
+     * The result is cached, so repeated lookups do not hit the database.
+     *
+     * @throws SQLException if the database can not be reached, instead of handing out a balance of 0
+     */
+    public static UserRecord getUser(String userid) throws SQLException {
+        UserRecord record = cache.get(userid);
+        if (record != null)
+            return record;
+
+        // no money flush runs meanwhile, so every change is either in the selected row or still pending
+        return moneyBuffer.read(() -> {
+            UserRecord stored;
+            // the upsert leaves existing rows untouched, so new and existing users both take one upsert and one select
+            try (Connection c = source.getConnection()) {
+                try (PreparedStatement statement = c.prepareStatement(CREATE_USER)) {
+                    statement.setString(1, userid);
+                    statement.setString(2, DEFAULT_BIO);
+                    statement.executeUpdate();
+                }
+                stored = selectUser(c, userid);
+            }
+
+            if (stored == null)
+                throw new SQLException("The user " + userid + " is missing right after its upsert");
+
+            // cached while the user's money is locked, a concurrent add or set updates the cached record after that
+            return moneyBuffer.apply(userid, stored.getMoney(), money -> {
+                UserRecord loaded = stored.withMoney((int) money);
+                cache.put(userid, loaded);
+                return loaded;
+            });
+        });
+    }
+
+    private static UserRecord selectUser(Connection c, String userid) throws SQLException {
+        try (PreparedStatement statement = c.prepareStatement(GET_USER)) {
+            statement.setString(1, userid);
+
+            try (ResultSet set = statement.executeQuery()) {
+                if (set.next())
+                    return new UserRecord(set.getString("userid"), set.getInt("money"), set.getString("bio"));
             }
-        } catch (SQLException e){
-            e.printStackTrace();
         }
-        return false;
+        return null;
     }
 
-    public static UserSQL createUser(String userid){
-        try (Connection c = source.getConnection();) {
-            c.createStatement().executeUpdate("insert into users (userid, money, bio) values ( '" + userid + "', 0, '``Set a bio with -m bio <bio>``' )");
-        } catch (SQLException e){
-            System.out.println(e.getMessage());
+    public static boolean userExists(String userid) throws SQLException {
+        if (cache.get(userid) != null)
+            return true;
+
+        try (Connection c = source.getConnection();
+             PreparedStatement statement = c.prepareStatement(USER_EXISTS)) {
+            statement.setString(1, userid);
+
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next();
+            }
         }
+    }
+
+    public static UserSQL createUser(String userid) throws SQLException {
+        getUser(userid);
         return new UserSQL();
     }
 
-    public static String getBio(String userid){
-        try (Connection c = source.getConnection();) {
-            ResultSet set = c.createStatement().executeQuery("select bio from users where userid='" + userid + "'");
-            set.first();
-            return set.getString(1);
-        } catch (SQLException e){
-            e.printStackTrace();
-        }
-        return "";
+    public static String getBio(String userid) throws SQLException {
+        return getUser(userid).getBio();
     }
 
     public static void setBio(String userid, String bio){
-        try (Connection c = source.getConnection();) {
-            c.createStatement().executeUpdate("update users set bio='" + bio + "' where userid='" + userid + "'");
+        try (Connection c = source.getConnection();
+             PreparedStatement statement = c.prepareStatement(SET_BIO)) {
+            statement.setString(1, userid);
+            statement.setString(2, bio);
+            statement.executeUpdate();
+
+            cache.update(userid, record -> record.withBio(bio));
         } catch (SQLException e){
+            cache.remove(userid);
             e.printStackTrace();
         }
     }
 
-    public static int getMoney(String userid){
-        try (Connection c = source.getConnection();) {
-            ResultSet set = c.createStatement().executeQuery("select money from users where userid='" + userid + "'");
-            set.first();
-            return set.getInt(1);
-        } catch (SQLException e){
-            e.printStackTrace();
-        }
-        return 0;
+    public static int getMoney(String userid) throws SQLException {
+        return getUser(userid).getMoney();
     }
 
+    /**
+     * Overwrites the money through the write-behind buffer, so it can not race with a flush of older increments.
+     */
     public static void setMoney(String userid, int money){
-        try (Connection c = source.getConnection();) {
-            c.createStatement().executeUpdate("update users set money=" + money + " where userid='" + userid + "'");
-        } catch (SQLException e){
-            e.printStackTrace();
+        moneyBuffer.set(userid, money, () -> cache.update(userid, record -> record.withMoney(money)));
+    }
+
+    /**
+     * Adds money without a database round trip, the increments are written in batches by the write-behind buffer.
+     */
+    public static void addMoney(String userid, int amount){
+        moneyBuffer.add(userid, amount, () -> cache.update(userid, record -> record.withMoney(record.getMoney() + amount)));
+    }
+
+    private static void flushMoney(Map<String, WriteBehindBuffer.Change> changes) throws SQLException {
+        try (Connection c = source.getConnection();
+             PreparedStatement set = c.prepareStatement(SET_MONEY);
+             PreparedStatement add = c.prepareStatement(ADD_MONEY)) {
+            for (Map.Entry<String, WriteBehindBuffer.Change> change : changes.entrySet()) {
+                PreparedStatement statement = change.getValue().isOverwrite() ? set : add;
+                statement.setString(1, change.getKey());
+                statement.setLong(2, change.getValue().getValue());
+                statement.setString(3, DEFAULT_BIO);
+                statement.addBatch();
+            }
+            set.executeBatch();
+            add.executeBatch();
         }
     }
 
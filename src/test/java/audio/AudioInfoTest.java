@@ -0,0 +1,258 @@
+package audio;
+/*
+    Created by nils on 19.02.2018 at 20:30.
+    
+    (c) nils 2018
+*/
+
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.ChannelType;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openjdk.jol.info.GraphStats;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the heap a long queue retains: entries holding the MessageReceivedEvent of their command, like AudioInfo did
+ * before, against entries that only keep the ids, and decoded tracks against tracks kept in lavaplayer's encoded form.
+ * The sizes are the object graphs JOL finds from the queues. Encoded entries are also decoded and dropped again, the
+ * tracks are YouTube tracks that are never loaded, so no request is sent.
+ */
+public class AudioInfoTest {
+
+    // about the length of a large playlist queue
+    private static final int ENTRIES = 100000;
+
+    private static final long GUILD = 300000000000000000L;
+    private static final long CHANNEL = 300000000000000001L;
+    private static final long REQUESTER = 300000000000000002L;
+
+    // the encoded tracks are compared with fewer entries, walking every decoded track is slow
+    private static final int TRACKS = 10000;
+
+    private static DefaultAudioPlayerManager manager;
+    private static YoutubeAudioSourceManager youtube;
+    private static MessageReceivedEvent event;
+
+    @BeforeClass
+    public static void createManager() {
+        manager = new DefaultAudioPlayerManager();
+        youtube = new YoutubeAudioSourceManager();
+        manager.registerSourceManager(youtube);
+
+        // the command an encoded entry takes its ids from
+        Guild guild = proxy(Guild.class, (proxy, method, args) -> method.getName().equals("getIdLong") ? GUILD : null);
+        TextChannel channel = proxy(TextChannel.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getIdLong":
+                    return CHANNEL;
+                case "getType":
+                    return ChannelType.TEXT;
+                case "getGuild":
+                    return guild;
+                default:
+                    return null;
+            }
+        });
+        User author = proxy(User.class, (proxy, method, args) -> method.getName().equals("getIdLong") ? REQUESTER : null);
+        Message message = proxy(Message.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getIdLong":
+                    return REQUESTER + 1;
+                case "getChannel":
+                case "getTextChannel":
+                    return channel;
+                case "getGuild":
+                    return guild;
+                case "getAuthor":
+                    return author;
+                default:
+                    return null;
+            }
+        });
+        event = new MessageReceivedEvent(proxy(JDA.class, (proxy, method, args) -> null), 0, message);
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        manager.shutdown();
+    }
+
+    // every track gets its own strings, like tracks loaded from a playlist
+    private static AudioTrack track(int i, YoutubeAudioSourceManager sourceManager) {
+        String identifier = String.format("v%010d", i);
+        return new YoutubeAudioTrack(new AudioTrackInfo("Some artist - Some song title (Official Video) #" + i,
+                "Some artist " + i, 213000 + i, identifier, false, "https://www.youtube.com/watch?v=" + identifier), sourceManager);
+    }
+
+    private static void assertSameTrack(AudioTrack expected, AudioTrack actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getInfo().title, actual.getInfo().title);
+        assertEquals(expected.getInfo().author, actual.getInfo().author);
+        assertEquals(expected.getInfo().length, actual.getInfo().length);
+        assertEquals(expected.getInfo().identifier, actual.getInfo().identifier);
+        assertEquals(expected.getInfo().uri, actual.getInfo().uri);
+    }
+
+    @Test
+    public void idEntriesNeedFarLessHeap() {
+        // both kinds of entries point to the same track, it is left out like the entities JDA shares between messages
+        AudioTrack track = new YoutubeAudioTrack(new AudioTrackInfo("Some artist - Some song title (Official Video)",
+                "Some artist", 213000, "dQw4w9WgXcQ", false, "https://www.youtube.com/watch?v=dQw4w9WgXcQ"), null);
+        JDA jda = proxy(JDA.class, (proxy, method, args) -> null);
+        TextChannel channel = proxy(TextChannel.class, (proxy, method, args) -> null);
+
+        List<EventInfo> eventEntries = new ArrayList<>(ENTRIES);
+        List<AudioInfo> idEntries = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            Message message = proxy(Message.class, new ReceivedMessage(REQUESTER + 1 + i, channel,
+                    "!play https://www.youtube.com/watch?v=" + String.format("v%010d", i)));
+            eventEntries.add(new EventInfo(track, new MessageReceivedEvent(jda, i, message)));
+            idEntries.add(new AudioInfo(track, GUILD, CHANNEL, REQUESTER));
+        }
+
+        // graph sizes of the reachable objects, they do not depend on when the garbage collector runs
+        long eventBytes = GraphStats.parseInstance(eventEntries).totalSize() - GraphStats.parseInstance(track, jda, channel).totalSize();
+        long idBytes = GraphStats.parseInstance(idEntries).totalSize() - GraphStats.parseInstance(track).totalSize();
+
+        // 40 bytes per entry with compressed references, against the event and the message of every command
+        assertTrue("ids " + idBytes + " B, events " + eventBytes + " B", idBytes * 5 < eventBytes);
+    }
+
+    @Test
+    public void encodedEntryMaterializesAndReleases() {
+        AudioTrack track = track(1, youtube);
+        AudioInfo info = AudioInfo.encoded(manager, track, event);
+        assertNotNull(info);
+        assertEquals(GUILD, info.getGuildId());
+        assertEquals(CHANNEL, info.getChannelId());
+        assertEquals(REQUESTER, info.getRequesterId());
+
+        assertNull(info.getTrack());
+        assertTrue(info.materialize(manager));
+        AudioTrack first = info.getTrack();
+        assertSameTrack(track, first);
+
+        // materializing twice keeps the decoded track
+        assertTrue(info.materialize(manager));
+        assertSame(first, info.getTrack());
+
+        info.release();
+        assertNull(info.getTrack());
+        assertTrue(info.materialize(manager));
+        assertNotSame(first, info.getTrack());
+        assertSameTrack(track, info.getTrack());
+    }
+
+    @Test
+    public void decodedEntryIsNeverReleased() {
+        AudioTrack track = track(2, youtube);
+        AudioInfo info = new AudioInfo(track, GUILD, CHANNEL, REQUESTER);
+
+        info.release();
+        assertSame(track, info.getTrack());
+        assertTrue(info.materialize(manager));
+    }
+
+    @Test
+    public void brokenTrackDoesNotDecode() {
+        assertNull(AudioInfo.decode(manager, new byte[]{1, 2, 3}));
+        assertSameTrack(track(3, youtube), AudioInfo.decode(manager, AudioInfo.encode(manager, track(3, youtube))));
+    }
+
+    @Test
+    public void encodedEntriesNeedLessHeap() {
+        List<AudioInfo> decoded = new ArrayList<>(TRACKS);
+        List<AudioInfo> encoded = new ArrayList<>(TRACKS);
+        for (int i = 0; i < TRACKS; i++) {
+            // the source manager is shared by all tracks and left out of the decoded ones
+            decoded.add(new AudioInfo(track(i, null), GUILD, CHANNEL, REQUESTER));
+            encoded.add(AudioInfo.encoded(manager, track(i, youtube), event));
+        }
+
+        long decodedBytes = GraphStats.parseInstance(decoded).totalSize();
+        long encodedBytes = GraphStats.parseInstance(encoded).totalSize();
+
+        // the strings are in both, the encoded form saves the track objects around them
+        assertTrue("encoded " + encodedBytes + " B, decoded " + decodedBytes + " B", encodedBytes * 3 < decodedBytes * 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    // AudioInfo as it was before it kept only ids
+    private static class EventInfo {
+        private final AudioTrack TRACK;
+        private final MessageReceivedEvent EVENT;
+
+        private EventInfo(AudioTrack track, MessageReceivedEvent event) {
+            this.TRACK = track;
+            this.EVENT = event;
+        }
+    }
+
+    /**
+     * The state JDA's ReceivedMessage keeps for a command message without mentions, attachments or embeds. The
+     * lists are the empty ones JDA creates for every message.
+     */
+    private static class ReceivedMessage implements InvocationHandler {
+        private final long id;
+        private final TextChannel channel;
+        private final String content;
+        private final boolean mentionsEveryone = false;
+        private final boolean tts = false;
+        private final boolean pinned = false;
+        private final List<Object> mentionedUsers = Collections.unmodifiableList(new ArrayList<>());
+        private final List<Object> mentionedRoles = Collections.unmodifiableList(new ArrayList<>());
+        private final List<Object> reactions = Collections.unmodifiableList(new ArrayList<>());
+        private final List<Object> attachments = Collections.unmodifiableList(new ArrayList<>());
+        private final List<Object> embeds = Collections.unmodifiableList(new ArrayList<>());
+
+        private ReceivedMessage(long id, TextChannel channel, String content) {
+            this.id = id;
+            this.channel = channel;
+            this.content = content;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getIdLong":
+                    return id;
+                case "getChannel":
+                case "getTextChannel":
+                    return channel;
+                case "getContentRaw":
+                    return content;
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package audio;
+/*
+    Created by nils on 20.02.2018 at 11:30.
+    
+    (c) nils 2018
+*/
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class QueueSnapshotTest {
+
+    private static final long GUILD = 300000000000000000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    // entries that are only stored encoded, so no player manager is needed to write them
+    private File write(long position) throws Exception {
+        QueueSnapshot snapshot = new QueueSnapshot(1, TrackScheduler.LoopMode.QUEUE, 1, Arrays.asList(
+                AudioInfo.encoded(new byte[]{1, 2, 3}, GUILD, 11, 21),
+                AudioInfo.encoded(new byte[]{4, 5}, GUILD, 12, 22)));
+        snapshot.position = position;
+        snapshot.voiceChannel = 7;
+        snapshot.volume = 50;
+
+        File file = new File(folder.getRoot(), GUILD + ".bin");
+        snapshot.write(file, null, Integer.MAX_VALUE);
+        return file;
+    }
+
+    private static void assertQueue(QueueSnapshot snapshot) {
+        assertEquals(TrackScheduler.LoopMode.QUEUE, snapshot.loopMode);
+        assertEquals(1, snapshot.cursor);
+        assertEquals(7, snapshot.voiceChannel);
+        assertEquals(50, snapshot.volume);
+        assertEquals(2, snapshot.entries.size());
+        assertEquals(12, snapshot.entries.get(1).getChannelId());
+        assertEquals(22, snapshot.entries.get(1).getRequesterId());
+        assertArrayEquals(new byte[]{4, 5}, snapshot.entries.get(1).getEncoded(null));
+    }
+
+    @Test
+    public void positionIsRewrittenInPlace() throws Exception {
+        File file = write(1000);
+        assertEquals(1000, QueueSnapshot.read(file, GUILD).position);
+
+        QueueSnapshot.writePosition(file, 5000);
+        QueueSnapshot snapshot = QueueSnapshot.read(file, GUILD);
+        assertEquals(5000, snapshot.position);
+        assertQueue(snapshot);
+    }
+
+    @Test
+    public void tornPositionIsReadAsZero() throws Exception {
+        File file = write(1000);
+        QueueSnapshot.writePosition(file, 5000);
+
+        // a crash after the first half of the field was written
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(8);
+            raf.writeLong(9000);
+        }
+
+        QueueSnapshot snapshot = QueueSnapshot.read(file, GUILD);
+        assertEquals(0, snapshot.position);
+        assertQueue(snapshot);
+    }
+
+    @Test
+    public void positionOfAMissingSnapshotIsNotWritten() throws Exception {
+        File file = new File(folder.getRoot(), GUILD + ".bin");
+        QueueSnapshot.writePosition(file, 5000);
+        assertFalse(file.exists());
+    }
+
+}
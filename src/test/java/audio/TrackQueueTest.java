@@ -0,0 +1,194 @@
+package audio;
+/*
+    Created by nils on 19.02.2018 at 14:10.
+    
+    (c) nils 2018
+*/
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TrackQueueTest {
+
+    // entries are told apart by their requester id, the track itself is never touched by the queue
+    private static AudioInfo entry(int id){
+        return new AudioInfo(null, 1, 2, id);
+    }
+
+    private static TrackQueue queueOf(int count){
+        TrackQueue queue = new TrackQueue();
+        for (int i = 0; i < count; i++)
+            queue.add(entry(i));
+        return queue;
+    }
+
+    private static List<Integer> ids(TrackQueue queue){
+        List<Integer> ids = new ArrayList<>(queue.size());
+        for (int i = 0; i < queue.size(); i++)
+            ids.add((int) queue.get(i).getRequesterId());
+        return ids;
+    }
+
+    private static List<Integer> range(int from, int to){
+        List<Integer> range = new ArrayList<>();
+        for (int i = from; i < to; i++)
+            range.add(i);
+        return range;
+    }
+
+    @Test
+    public void startsWithoutCurrentTrack(){
+        TrackQueue queue = queueOf(3);
+        assertEquals(-1, queue.getCursor());
+        assertNull(queue.current());
+        assertEquals(3, queue.upcoming());
+        assertNull(queue.get(3));
+        assertNull(queue.get(-1));
+    }
+
+    @Test
+    public void advanceDropsPlayedTracks(){
+        TrackQueue queue = queueOf(3);
+        assertEquals(0, queue.advance(false).getRequesterId());
+        assertEquals(1, queue.advance(false).getRequesterId());
+        assertEquals(0, queue.getCursor());
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.advance(false).getRequesterId());
+        assertNull(queue.advance(false));
+        assertEquals(0, queue.size());
+        assertEquals(-1, queue.getCursor());
+    }
+
+    @Test
+    public void wrapsAroundTheRingBuffer(){
+        TrackQueue queue = queueOf(16);
+        queue.advance(false);
+        queue.jump(10, false); // head is at 10 now, the next adds wrap around the end of the array
+        assertEquals(10, queue.current().getRequesterId());
+
+        for (int i = 16; i < 24; i++)
+            queue.add(entry(i));
+        assertEquals(range(10, 24), ids(queue));
+
+        // grows while wrapped, the order has to survive the copy
+        for (int i = 24; i < 40; i++)
+            queue.add(entry(i));
+        assertEquals(range(10, 40), ids(queue));
+        assertEquals(10, queue.current().getRequesterId());
+        assertEquals(29, queue.upcoming());
+    }
+
+    @Test
+    public void loopJumpsOnlyMoveTheCursor(){
+        TrackQueue queue = queueOf(5);
+        queue.advance(true);
+        assertEquals(0, queue.getCursor());
+
+        assertEquals(3, queue.jump(3, true).getRequesterId());
+        assertEquals(0, queue.jump(2, true).getRequesterId()); // wraps around
+        assertEquals(4, queue.jump(-1, true).getRequesterId()); // backwards as well
+        assertEquals(2, queue.jump(13, true).getRequesterId()); // more than one round
+        assertEquals(range(0, 5), ids(queue));
+    }
+
+    @Test
+    public void jumpBehindTheEndClearsTheQueue(){
+        TrackQueue queue = queueOf(5);
+        queue.advance(false);
+        assertNull(queue.jump(10, false));
+        assertEquals(0, queue.size());
+        assertEquals(-1, queue.getCursor());
+    }
+
+    @Test
+    public void removeCurrentContinuesWithTheNextTrack(){
+        TrackQueue queue = queueOf(3);
+        queue.jump(3, true); // cursor on the last track
+        assertEquals(2, queue.getCursor());
+
+        assertEquals(0, queue.removeCurrent(true).getRequesterId());
+        assertEquals(range(0, 2), ids(queue));
+
+        queue.jump(1, true);
+        assertNull(queue.removeCurrent(false));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void shuffleKeepsPlayedAndCurrentTracks(){
+        TrackQueue queue = queueOf(50);
+        queue.jump(11, true);
+        List<Integer> before = ids(queue);
+
+        queue.shuffle(new Random(42));
+        List<Integer> after = ids(queue);
+
+        assertEquals(before.subList(0, 11), after.subList(0, 11));
+        assertFalse(before.equals(after));
+        Collections.sort(after);
+        assertEquals(range(0, 50), after);
+    }
+
+    @Test
+    public void moveShiftsTheTracksInBetween(){
+        TrackQueue queue = queueOf(6);
+        queue.advance(true);
+
+        assertTrue(queue.move(1, 4));
+        assertEquals(Arrays.asList(0, 2, 3, 4, 1, 5), ids(queue));
+        assertTrue(queue.move(5, 1));
+        assertEquals(Arrays.asList(0, 5, 2, 3, 4, 1), ids(queue));
+
+        assertFalse(queue.move(0, 2)); // the current track can not be moved
+        assertFalse(queue.move(1, 6));
+    }
+
+    @Test
+    public void removeUpcomingKeepsTheCurrentTrack(){
+        TrackQueue queue = queueOf(10);
+        queue.jump(3, true);
+        AudioInfo current = queue.current();
+
+        assertEquals(3, queue.removeUpcoming(0, 4));
+        assertSame(current, queue.current());
+        assertEquals(Arrays.asList(0, 1, 2, 6, 7, 8, 9), ids(queue));
+        assertEquals(0, queue.removeUpcoming(5, 20));
+        assertEquals(2, queue.removeUpcoming(3, 20));
+        assertEquals(Arrays.asList(0, 1, 2, 6, 7), ids(queue));
+    }
+
+    @Test
+    public void getUpcomingReturnsACopy(){
+        TrackQueue queue = queueOf(4);
+        queue.advance(false);
+        List<AudioInfo> upcoming = queue.getUpcoming();
+        assertEquals(3, upcoming.size());
+        assertEquals(1, upcoming.get(0).getRequesterId());
+
+        upcoming.clear();
+        assertEquals(3, queue.upcoming());
+    }
+
+    @Test
+    public void clearResetsTheCursor(){
+        TrackQueue queue = queueOf(20);
+        queue.jump(5, true);
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertEquals(-1, queue.getCursor());
+
+        queue.add(entry(7));
+        assertEquals(7, queue.advance(false).getRequesterId());
+    }
+}
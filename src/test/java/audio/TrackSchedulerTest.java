@@ -0,0 +1,270 @@
+package audio;
+/*
+    Created by nils on 19.02.2018 at 15:32.
+    
+    (c) nils 2018
+*/
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers one scheduler from many threads with queue, shuffle, move, jump and track end calls and compares the result
+ * with a model of what was queued: no track may be lost or duplicated, and the player has to play the track the
+ * scheduler considers current. The threads meet after every round, so the state is checked before a later call could
+ * cover up a wrong one.
+ */
+public class TrackSchedulerTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 500;
+    private static final int OPERATIONS = 10;
+
+    private final AtomicInteger ids = new AtomicInteger();
+    // ids of all queued tracks, the model the scheduler is checked against
+    private final ConcurrentLinkedQueue<Integer> queued = new ConcurrentLinkedQueue<>();
+
+    @Test
+    public void loopedQueueKeepsEveryTrack() throws Exception {
+        FakePlayer player = new FakePlayer();
+        TrackScheduler scheduler = new TrackScheduler(player.proxy, new FakePlayer().proxy, null);
+        scheduler.setLoopMode(TrackScheduler.LoopMode.QUEUE);
+
+        hammer(() -> {
+            switch (ThreadLocalRandom.current().nextInt(6)) {
+                case 0:
+                case 1:
+                    queue(scheduler);
+                    break;
+                case 2:
+                    scheduler.shuffleQueue();
+                    break;
+                case 3:
+                    scheduler.jump(ThreadLocalRandom.current().nextInt(1, 6), false);
+                    break;
+                case 4:
+                    scheduler.moveTrack(ThreadLocalRandom.current().nextInt(1, 10), ThreadLocalRandom.current().nextInt(1, 10));
+                    break;
+                default:
+                    player.finish(scheduler);
+            }
+        }, () -> {
+            // looping only moves the cursor, so the queue has to hold exactly the queued tracks
+            QueueSnapshot snapshot = scheduler.snapshot(Integer.MAX_VALUE / 2);
+            List<Integer> entries = new ArrayList<>();
+            for (AudioInfo info : snapshot.entries)
+                entries.add(id(info.getTrack()));
+            Collections.sort(entries);
+            List<Integer> expected = new ArrayList<>(queued);
+            Collections.sort(expected);
+            assertEquals(expected, entries);
+
+            assertPlaysCurrent(scheduler, player);
+            if (!queued.isEmpty())
+                assertEquals(scheduler.getCurrentTrack(), snapshot.entries.get(snapshot.cursor));
+        });
+
+        assertNotNull(player.playing);
+    }
+
+    @Test
+    public void everyTrackIsPlayedOnce() throws Exception {
+        FakePlayer player = new FakePlayer();
+        TrackScheduler scheduler = new TrackScheduler(player.proxy, new FakePlayer().proxy, null);
+
+        hammer(() -> {
+            switch (ThreadLocalRandom.current().nextInt(6)) {
+                case 0:
+                case 1:
+                    queue(scheduler);
+                    break;
+                case 2:
+                    scheduler.shuffleQueue();
+                    break;
+                case 3:
+                    scheduler.moveTrack(ThreadLocalRandom.current().nextInt(1, 10), ThreadLocalRandom.current().nextInt(1, 10));
+                    break;
+                case 4:
+                    scheduler.nextTrack(false); // the skipped track was started, so it still counts as played
+                    break;
+                default:
+                    player.finish(scheduler);
+            }
+        }, () -> assertPlaysCurrent(scheduler, player));
+
+        // play the rest of the queue
+        while (player.playing != null)
+            player.finish(scheduler);
+        assertNull(scheduler.getCurrentTrack());
+        assertEquals(0, scheduler.getQueueSize());
+
+        Set<Integer> played = new HashSet<>();
+        for (int id : player.started)
+            assertTrue("track " + id + " was played twice", played.add(id));
+        assertEquals(new HashSet<>(queued), played);
+        assertEquals(queued.size(), player.started.size());
+    }
+
+    private static void assertPlaysCurrent(TrackScheduler scheduler, FakePlayer player){
+        AudioInfo current = scheduler.getCurrentTrack();
+        AudioTrack playing = player.playing;
+        if (current == null) {
+            assertNull(playing);
+        } else {
+            assertNotNull("the scheduler has a current track but the player is idle", playing);
+            assertEquals(id(current.getTrack()), id(playing));
+        }
+    }
+
+    private void queue(TrackScheduler scheduler){
+        int id = ids.incrementAndGet();
+        queued.add(id);
+        scheduler.queue(new AudioInfo(track(id), 1, 2, 3));
+    }
+
+    // runs the operation from all threads in rounds, the check runs between two rounds while all threads wait
+    private static void hammer(Runnable operation, Runnable check) throws Exception {
+        CyclicBarrier round = new CyclicBarrier(THREADS, check);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    round.await();
+                    for (int r = 0; r < ROUNDS; r++) {
+                        for (int n = 0; n < OPERATIONS; n++)
+                            operation.run();
+                        round.await();
+                    }
+                } catch (BrokenBarrierException e) {
+                    // another thread failed, its failure is reported
+                } catch (Throwable t) {
+                    failures.add(t);
+                    round.reset();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(Collections.emptyList(), failures);
+    }
+
+    // a track that only knows its id, every clone is a new instance with the same id
+    private static AudioTrack track(int id){
+        return (AudioTrack) Proxy.newProxyInstance(AudioTrack.class.getClassLoader(), new Class<?>[]{AudioTrack.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "makeClone":
+                    return track(id);
+                case "getIdentifier":
+                    return String.valueOf(id);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "track " + id;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static int id(AudioTrack track){
+        return Integer.parseInt(track.getIdentifier());
+    }
+
+    private static Object defaultValue(Class<?> type){
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        return null;
+    }
+
+    /**
+     * A player without playback: it remembers the started track and fails like lavaplayer does if the same track
+     * instance is started twice. The test ends tracks with {@link #finish(TrackScheduler)}.
+     */
+    private static class FakePlayer {
+        private final AudioPlayer proxy;
+        private final List<Integer> started = Collections.synchronizedList(new ArrayList<>());
+        private final Set<AudioTrack> instances = Collections.synchronizedSet(new HashSet<>());
+        private volatile AudioTrack playing;
+        private volatile boolean paused;
+
+        private FakePlayer(){
+            proxy = (AudioPlayer) Proxy.newProxyInstance(AudioPlayer.class.getClassLoader(), new Class<?>[]{AudioPlayer.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "startTrack":
+                        // lavaplayer takes a lock and stops the previous track first, give other threads a chance to overtake
+                        Thread.yield();
+                        return start((AudioTrack) args[0], (Boolean) args[1]);
+                    case "playTrack":
+                        return start((AudioTrack) args[0], false);
+                    case "stopTrack":
+                        return start(null, false);
+                    case "getPlayingTrack":
+                        return playing;
+                    case "isPaused":
+                        return paused;
+                    case "setPaused":
+                        paused = (Boolean) args[0];
+                        return null;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+        }
+
+        private synchronized boolean start(AudioTrack track, boolean noInterrupt){
+            if (noInterrupt && playing != null)
+                return false;
+            if (track != null) {
+                assertTrue("the same track instance was started twice", instances.add(track));
+                started.add(id(track));
+            }
+            playing = track;
+            return true;
+        }
+
+        // ends the playing track like the playback thread does when it reaches the end
+        private void finish(TrackScheduler scheduler){
+            AudioTrack ended;
+            synchronized (this) {
+                ended = playing;
+                if (ended == null)
+                    return;
+                playing = null;
+            }
+            scheduler.onTrackEnd(proxy, ended, AudioTrackEndReason.FINISHED);
+        }
+    }
+}
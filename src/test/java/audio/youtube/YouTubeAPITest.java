@@ -0,0 +1,188 @@
+package audio.youtube;
+/*
+    Created by nils on 19.02.2018 at 19:45.
+    
+    (c) nils 2018
+*/
+
+import com.google.api.services.youtube.model.SearchResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import utils.Static;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the searches against a local server that answers like the Data API, so the requests that actually reach the
+ * API can be counted. Every test uses its own queries, the cache is shared by all of them.
+ */
+public class YouTubeAPITest {
+
+    private static HttpServer server;
+    private static ExecutorService handlers;
+
+    // requests by query as the server received them
+    private static final ConcurrentMap<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    // remote ports of the received requests, one port is one connection
+    private static final Set<Integer> ports = ConcurrentHashMap.newKeySet();
+    // queries the server answers only after the latch was released
+    private static final ConcurrentMap<String, CountDownLatch> held = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public static void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", YouTubeAPITest::handle);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+
+        // read when the client is built, before the first search loads YouTubeAPI
+        Static.YouTube.ROOT_URL = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterClass
+    public static void stop() {
+        held.values().forEach(CountDownLatch::countDown);
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        String query = parameter(exchange, "q");
+        ports.add(exchange.getRemoteAddress().getPort());
+        requests.computeIfAbsent(query, q -> new AtomicInteger()).incrementAndGet();
+
+        CountDownLatch latch = held.get(query);
+        if (latch != null) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        byte[] body = ("{\"items\":[{\"id\":{\"kind\":\"youtube#video\",\"videoId\":\"" + Math.abs(query.hashCode())
+                + "\"},\"snippet\":{\"title\":\"" + query + "\"}}]}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        try {
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // the client gave up waiting
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String parameter(HttpExchange exchange, String name) throws UnsupportedEncodingException {
+        for (String pair : exchange.getRequestURI().getRawQuery().split("&")) {
+            int split = pair.indexOf('=');
+            if (split > 0 && pair.substring(0, split).equals(name))
+                return URLDecoder.decode(pair.substring(split + 1), "UTF-8");
+        }
+        return "";
+    }
+
+    private static int requests(String query) {
+        AtomicInteger count = requests.get(query);
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    public void searchesShareOneClientAndConnection() throws Exception {
+        assertSame(YouTubeAPI.getYouTube(), YouTubeAPI.getYouTube());
+
+        ports.clear();
+        for (int i = 0; i < 5; i++)
+            assertEquals("shared " + i, YouTubeAPI.searchVideo("shared " + i).getSnippet().getTitle());
+
+        // the searches run one after another, so the jdk hands the kept alive connection to each of them
+        assertEquals(1, ports.size());
+    }
+
+    @Test
+    public void normalizedQueriesAreCached() throws Exception {
+        SearchResult first = YouTubeAPI.searchVideo("Never Gonna  Give");
+        assertSame(first, YouTubeAPI.searchVideo("  never gonna give "));
+        assertSame(first, YouTubeAPI.searchVideo("NEVER\tGONNA GIVE"));
+        assertEquals(1, requests("Never Gonna  Give"));
+
+        // the amount of results is part of the key
+        YouTubeAPI.searchVideos("never gonna give", 5);
+        assertEquals(1, requests("never gonna give"));
+        assertTrue(YouTubeAPI.getCache().getHits() >= 2);
+    }
+
+    @Test
+    public void identicalSearchesShareOneRequest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        held.put("collapse", release);
+
+        List<CompletableFuture<SearchResult>> searches = new ArrayList<>();
+        searches.add(YouTubeAPI.searchVideoAsync("collapse"));
+        for (int i = 0; i < 7; i++)
+            searches.add(YouTubeAPI.searchVideoAsync(i % 2 == 0 ? "Collapse " : "collapse"));
+        for (CompletableFuture<SearchResult> search : searches)
+            assertTrue("a search completed before the request was answered", !search.isDone());
+        release.countDown();
+
+        Set<SearchResult> results = new HashSet<>();
+        for (CompletableFuture<SearchResult> search : searches)
+            results.add(search.get(5, TimeUnit.SECONDS));
+        assertEquals(1, results.size());
+        assertEquals(1, requests("collapse"));
+        assertEquals(0, requests("Collapse "));
+    }
+
+    @Test
+    public void slowResponsesTimeOut() throws Exception {
+        held.put("slow", new CountDownLatch(1));
+        int readTimeout = Static.YouTube.READ_TIMEOUT;
+        Static.YouTube.READ_TIMEOUT = 200;
+        try {
+            long start = System.nanoTime();
+            try {
+                YouTubeAPI.searchVideo("slow");
+                fail("the search did not time out");
+            } catch (SocketTimeoutException e) {
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+            }
+
+            // a failed search is not cached, the next one asks again
+            held.remove("slow").countDown();
+            assertEquals("slow", YouTubeAPI.searchVideo("slow").getSnippet().getTitle());
+            assertEquals(2, requests("slow"));
+        } finally {
+            Static.YouTube.READ_TIMEOUT = readTimeout;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package core.files;
+/*
+    Created by nils on 20.02.2018 at 00:15.
+    
+    (c) nils 2018
+*/
+
+import core.tools.JsonFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UserStoreTest {
+
+    // a table of the initial capacity takes this many users before it grows
+    private static final int FULL = (1 << 16) * 7 / 10;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private UserStore open() {
+        return new UserStore(new File(folder.getRoot(), "users.db").getPath());
+    }
+
+    // snowflake-like ids, the timestamp bits differ and the low bits are alike
+    private static List<Long> ids(int n, long seed) {
+        Random random = new Random(seed);
+        List<Long> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            ids.add(((random.nextLong() >>> 24) << 22) | 1);
+        return ids;
+    }
+
+    private static void assertUsers(UserStore store, List<Long> ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            assertTrue("user " + i + " is lost", store.contains(ids.get(i)));
+            assertEquals(i, store.getLong(ids.get(i), UserStore.MESSAGES));
+        }
+        assertEquals(ids.size(), store.size());
+    }
+
+    @Test
+    public void insertsAndLooksUpUsers() {
+        UserStore store = open();
+        assertFalse(store.contains(42));
+        assertEquals(0, store.getLong(42, UserStore.XP));
+
+        store.setLong(42, UserStore.MESSAGES, 7);
+        assertEquals(10, store.addLong(42, UserStore.MESSAGES, 3));
+        assertEquals(5, store.addLong(42, UserStore.XP, 5));
+        store.setInt(43, UserStore.REPUTATION, 80);
+
+        assertEquals(10, store.getLong(42, UserStore.MESSAGES));
+        assertEquals(5, store.getLong(42, UserStore.XP));
+        assertEquals(100, store.getInt(42, UserStore.REPUTATION));
+        assertEquals(1, store.getInt(42, UserStore.REGISTERED));
+        assertEquals(80, store.getInt(43, UserStore.REPUTATION));
+        assertEquals(0, store.getLong(43, UserStore.MESSAGES));
+        assertEquals(2, store.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroIsNoUser() {
+        open().setLong(0, UserStore.MESSAGES, 1);
+    }
+
+    @Test
+    public void growsPastSeventyPercent() {
+        UserStore store = open();
+        File file = new File(folder.getRoot(), "users.db");
+        long initialLength = file.length();
+
+        List<Long> ids = ids(FULL + 1000, 1);
+        for (int i = 0; i < ids.size(); i++) {
+            store.setLong(ids.get(i), UserStore.MESSAGES, i);
+            if (i == FULL - 1)
+                assertEquals(initialLength, file.length());
+        }
+
+        // grown in place to twice the records
+        assertEquals(16 + (initialLength - 16) * 2, file.length());
+        assertFalse(new File(folder.getRoot(), "users.db.tmp").exists());
+        assertUsers(store, ids);
+    }
+
+    @Test
+    public void growKeepsRunsAcrossTheEndOfTheTable() {
+        int capacity = 1 << 16;
+        // users whose run wraps around from the last slot into the first slots, both before and after growing
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; ids.size() < 6; id++)
+            if (UserStore.slot(id, capacity * 2) == capacity * 2 - 1)
+                ids.add(id);
+        for (long id = 1; ids.size() < 12; id++)
+            if (UserStore.slot(id, capacity * 2) == capacity)
+                ids.add(id);
+        for (long id = 1; ids.size() < 18; id++)
+            if (UserStore.slot(id, capacity * 2) == 0)
+                ids.add(id);
+        for (long id : ids(FULL, 2))
+            if (!ids.contains(id))
+                ids.add(id);
+
+        UserStore store = open();
+        for (int i = 0; i < ids.size(); i++)
+            store.setLong(ids.get(i), UserStore.MESSAGES, i);
+        assertUsers(store, ids);
+    }
+
+    @Test
+    public void reopensWithItsUsers() {
+        List<Long> ids = ids(FULL + 1000, 3);
+        UserStore store = open();
+        for (int i = 0; i < ids.size(); i++)
+            store.setLong(ids.get(i), UserStore.MESSAGES, i);
+        store.setInt(ids.get(0), UserStore.REPUTATION, 90);
+        store.force();
+
+        UserStore reopened = open();
+        assertUsers(reopened, ids);
+        assertEquals(90, reopened.getInt(ids.get(0), UserStore.REPUTATION));
+    }
+
+    @Test
+    public void migratesJsonFiles() throws Exception {
+        File dir = folder.newFolder("users");
+        JsonFile user = new JsonFile(new File(dir, "300000000000000001.json").getPath());
+        user.set("registered", true);
+        user.set("msgs", 12L);
+        user.set("xp", 34L);
+        user.set("reputation", 56L);
+        new JsonFile(new File(dir, "300000000000000002.json").getPath()).set("registered", true);
+        new JsonFile(new File(dir, "backup.json").getPath()).set("msgs", 1L);
+
+        UserStore store = open();
+        assertEquals(2, store.migrate(dir));
+
+        assertEquals(12, store.getLong(300000000000000001L, UserStore.MESSAGES));
+        assertEquals(34, store.getLong(300000000000000001L, UserStore.XP));
+        assertEquals(56, store.getInt(300000000000000001L, UserStore.REPUTATION));
+        assertEquals(0, store.getLong(300000000000000002L, UserStore.MESSAGES));
+        assertEquals(100, store.getInt(300000000000000002L, UserStore.REPUTATION));
+        assertEquals(2, store.size());
+
+        // moved away, so the next start does not import it again
+        assertFalse(dir.exists());
+        assertTrue(new File(folder.getRoot(), "users.migrated").isDirectory());
+    }
+
+}
@@ -0,0 +1,206 @@
+package core.tools;
+/*
+    Created by nils on 19.02.2018 at 18:20.
+    
+    (c) nils 2018
+*/
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindBufferTest {
+
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    // what the flusher wrote, the database of these tests
+    private final Map<String, Long> stored = new HashMap<>();
+
+    // buffers created by the test, closed after it so their flush interval does not outlive it
+    private final List<WriteBehindBuffer<String>> buffers = new ArrayList<>();
+
+    private synchronized void write(Map<String, WriteBehindBuffer.Change> changes){
+        changes.forEach((key, change) -> stored.put(key, change.applyTo(stored.getOrDefault(key, 0L))));
+    }
+
+    private WriteBehindBuffer<String> buffer(WriteBehindBuffer.Flusher<String> flusher){
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", flusher, NEVER, 1000);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    @After
+    public void close(){
+        buffers.forEach(WriteBehindBuffer::close);
+    }
+
+    @Test
+    public void mergesIncrementsOfAKey(){
+        WriteBehindBuffer<String> buffer = buffer(this::write);
+        buffer.add("a", 1);
+        buffer.add("a", 2);
+        buffer.add("b", 5);
+        assertEquals(2, buffer.size());
+        assertEquals(13, buffer.apply("a", 10));
+
+        buffer.flush();
+        assertEquals(Long.valueOf(3), stored.get("a"));
+        assertEquals(Long.valueOf(5), stored.get("b"));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void overwriteDropsOlderIncrements(){
+        WriteBehindBuffer<String> buffer = buffer(this::write);
+        stored.put("a", 1000L);
+        buffer.add("a", 7);
+        buffer.set("a", 50);
+        buffer.add("a", 1);
+        assertEquals(51, buffer.apply("a", 1000));
+
+        buffer.flush();
+        assertEquals(Long.valueOf(51), stored.get("a"));
+    }
+
+    @Test
+    public void overwriteDuringAFlushIsWrittenAfterIt() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        WriteBehindBuffer<String> buffer = buffer(changes -> {
+            if (first.getAndSet(false)) {
+                flushing.countDown();
+                release.await();
+            }
+            write(changes);
+        });
+
+        buffer.add("a", 10);
+        Thread flush = new Thread(buffer::flush);
+        flush.start();
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+        // the running flush already took the increment, the overwrite has to win anyway
+        buffer.set("a", 100);
+        release.countDown();
+        flush.join();
+        buffer.flush();
+
+        assertEquals(Long.valueOf(100), stored.get("a"));
+    }
+
+    @Test
+    public void failedFlushIsRetriedInFrontOfNewerChanges(){
+        AtomicBoolean fail = new AtomicBoolean(true);
+        WriteBehindBuffer<String> buffer = buffer(changes -> {
+            if (fail.getAndSet(false))
+                throw new IllegalStateException("database down");
+            write(changes);
+        });
+
+        buffer.add("a", 5);
+        buffer.set("b", 20);
+        buffer.flush();
+        assertEquals(2, buffer.size());
+
+        buffer.add("a", 1);
+        buffer.add("b", 2);
+        buffer.set("c", 3);
+        buffer.flush();
+
+        assertEquals(Long.valueOf(6), stored.get("a"));
+        assertEquals(Long.valueOf(22), stored.get("b"));
+        assertEquals(Long.valueOf(3), stored.get("c"));
+    }
+
+    @Test
+    public void closeWritesPendingChangesAndStopsTheInterval() throws Exception {
+        WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", this::write, 10, 1000);
+        buffer.add("a", 4);
+        buffer.close();
+        assertEquals(4, storedValue("a"));
+
+        buffer.add("a", 1);
+        Thread.sleep(100);
+        assertEquals(1, buffer.size());
+        assertEquals(4, storedValue("a"));
+    }
+
+    @Test
+    public void readWaitsForARunningFlush() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindBuffer<String> buffer = buffer(changes -> {
+            flushing.countDown();
+            release.await();
+            write(changes);
+        });
+
+        buffer.add("a", 10);
+        Thread flush = new Thread(buffer::flush);
+        flush.start();
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+        // the flush took the increment but did not write it yet, a reader has to wait for the write
+        AtomicLong read = new AtomicLong(-1);
+        Thread reader = new Thread(() -> read.set(buffer.read(() -> buffer.apply("a", storedValue("a")))));
+        reader.start();
+        reader.join(200);
+        assertTrue(reader.isAlive());
+
+        release.countDown();
+        reader.join();
+        flush.join();
+        assertEquals(10, read.get());
+    }
+
+    @Test
+    public void changeWaitsForALockedApply() throws Exception {
+        WriteBehindBuffer<String> buffer = buffer(this::write);
+        buffer.add("a", 1);
+
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        Thread apply = new Thread(() -> buffer.apply("a", 0, value -> {
+            applying.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            order.add("apply " + value);
+            return value;
+        }));
+        apply.start();
+        assertTrue(applying.await(5, TimeUnit.SECONDS));
+
+        Thread add = new Thread(() -> buffer.add("a", 1, () -> order.add("add")));
+        add.start();
+        add.join(200);
+        assertTrue(add.isAlive());
+
+        release.countDown();
+        apply.join();
+        add.join();
+        assertEquals(Arrays.asList("apply 1", "add"), order);
+        assertEquals(2, buffer.apply("a", 0));
+    }
+
+    private synchronized long storedValue(String key){
+        return stored.getOrDefault(key, 0L);
+    }
+}
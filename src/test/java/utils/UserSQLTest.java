@@ -0,0 +1,195 @@
+package utils;
+/*
+    Created by nils on 19.02.2018 at 17:05.
+    
+    (c) nils 2018
+*/
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs UserSQL against an in-memory H2 database in MySQL mode, so the upserts are executed by a real SQL engine
+ * without a MySQL server.
+ */
+public class UserSQLTest {
+
+    private static final String URL = "jdbc:h2:mem:usersql;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @BeforeClass
+    public static void login() throws SQLException {
+        UserSQL.login(config(URL));
+
+        try (Connection c = UserSQL.getSource().getConnection();
+             Statement statement = c.createStatement()) {
+            statement.execute("create table users (userid varchar(32) primary key, money int not null, bio varchar(2000))");
+        }
+    }
+
+    @AfterClass
+    public static void close() {
+        UserSQL.close();
+    }
+
+    private static HikariConfig config(String url){
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("UserSQL-Test");
+        config.setJdbcUrl(url);
+        return config;
+    }
+
+    @Test
+    public void getUserCreatesTheRowOnce() throws SQLException {
+        assertFalse(UserSQL.userExists("1"));
+
+        UserRecord record = UserSQL.getUser("1");
+        assertEquals("1", record.getUserid());
+        assertEquals(0, record.getMoney());
+        assertTrue(UserSQL.userExists("1"));
+
+        UserSQL.getCache().remove("1");
+        UserSQL.getUser("1");
+        assertEquals(1, rows("1"));
+    }
+
+    @Test
+    public void setBioIsStoredVerbatim() throws SQLException {
+        String bio = "it's '); drop table users; --";
+        UserSQL.setBio("2", bio);
+        assertEquals(bio, UserSQL.getBio("2"));
+
+        UserSQL.setBio("2", "second");
+        UserSQL.getCache().remove("2");
+        assertEquals("second", UserSQL.getBio("2"));
+        assertEquals(1, rows("2"));
+    }
+
+    @Test
+    public void addMoneyIsWrittenBehind() throws SQLException {
+        UserSQL.getUser("3");
+        UserSQL.addMoney("3", 10);
+        UserSQL.addMoney("3", 5);
+        assertEquals(15, UserSQL.getMoney("3"));
+
+        // a reload before the flush still sees the pending increments
+        UserSQL.getCache().remove("3");
+        assertEquals(15, UserSQL.getMoney("3"));
+        assertEquals(Integer.valueOf(0), storedMoney("3"));
+
+        UserSQL.flush();
+        assertEquals(Integer.valueOf(15), storedMoney("3"));
+        assertEquals(15, UserSQL.getMoney("3"));
+    }
+
+    @Test
+    public void addMoneyCreatesMissingRows() throws SQLException {
+        assertNull(storedMoney("4"));
+        UserSQL.addMoney("4", 7);
+        UserSQL.flush();
+        assertEquals(Integer.valueOf(7), storedMoney("4"));
+    }
+
+    @Test
+    public void setMoneyOverwritesPendingIncrements() throws SQLException {
+        UserSQL.addMoney("5", 40);
+        UserSQL.setMoney("5", 100);
+        UserSQL.addMoney("5", 1);
+        assertEquals(101, UserSQL.getMoney("5"));
+
+        UserSQL.flush();
+        assertEquals(Integer.valueOf(101), storedMoney("5"));
+
+        UserSQL.addMoney("5", -1);
+        UserSQL.flush();
+        UserSQL.setMoney("5", 3);
+        UserSQL.flush();
+        assertEquals(Integer.valueOf(3), storedMoney("5"));
+    }
+
+    @Test
+    public void pooledConnectionsServeConcurrentCalls() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Static.SQL.POOL_SIZE * 3);
+        try {
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                String userid = "pool" + (i % 50);
+                calls.add(executor.submit(() -> {
+                    UserSQL.getCache().remove(userid);
+                    UserSQL.getUser(userid);
+                    UserSQL.setBio(userid, "bio of " + userid);
+                    UserSQL.addMoney(userid, 1);
+                    return null;
+                }));
+            }
+            for (Future<?> call : calls)
+                call.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        UserSQL.flush();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(1, rows("pool" + i));
+            assertEquals(Integer.valueOf(10), storedMoney("pool" + i));
+        }
+
+        HikariDataSource source = (HikariDataSource) UserSQL.getSource();
+        assertTrue(source.getHikariPoolMXBean().getTotalConnections() <= Static.SQL.POOL_SIZE);
+    }
+
+    @Test
+    public void failedLookupThrowsInsteadOfReturningZero() throws SQLException {
+        // a database without the users table
+        UserSQL.login(config("jdbc:h2:mem:nousers;MODE=MySQL"));
+        try {
+            UserSQL.getMoney("7");
+            fail("the lookup did not fail");
+        } catch (SQLException e) {
+            assertNull(UserSQL.getCache().get("7"));
+        } finally {
+            UserSQL.login(config(URL));
+        }
+    }
+
+    private static int rows(String userid) throws SQLException {
+        try (Connection c = UserSQL.getSource().getConnection();
+             PreparedStatement statement = c.prepareStatement("select count(*) from users where userid=?")) {
+            statement.setString(1, userid);
+            try (ResultSet set = statement.executeQuery()) {
+                set.next();
+                return set.getInt(1);
+            }
+        }
+    }
+
+    // the money column as it is stored, null if there is no row
+    private static Integer storedMoney(String userid) throws SQLException {
+        try (Connection c = UserSQL.getSource().getConnection();
+             PreparedStatement statement = c.prepareStatement("select money from users where userid=?")) {
+            statement.setString(1, userid);
+            try (ResultSet set = statement.executeQuery()) {
+                return set.next() ? set.getInt(1) : null;
+            }
+        }
+    }
+}